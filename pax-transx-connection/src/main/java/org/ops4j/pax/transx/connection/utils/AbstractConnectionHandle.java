@@ -15,6 +15,7 @@
 package org.ops4j.pax.transx.connection.utils;
 
 import javax.resource.spi.ConnectionRequestInfo;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public abstract class AbstractConnectionHandle<
         MCF extends AbstractManagedConnectionFactory<MCF, MC, C, CI>,
@@ -22,11 +23,17 @@ public abstract class AbstractConnectionHandle<
         C,
         CI extends AbstractConnectionHandle<MCF, MC, C, CI>> {
 
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<AbstractConnectionHandle> CLOSING
+            = AtomicIntegerFieldUpdater.newUpdater(AbstractConnectionHandle.class, "closing");
+
     protected final MCF mcf;
     protected final ConnectionRequestInfo cri;
     protected final MC mc;
 
     protected volatile boolean closed = false;
+    private volatile int closing;
+    private volatile int generation;
 
     protected AbstractConnectionHandle(MCF mcf,
                                        ConnectionRequestInfo cri,
@@ -44,16 +51,31 @@ public abstract class AbstractConnectionHandle<
     }
 
     public void close() {
-        if (!closed) {
-            synchronized (this) {
-                if (!closed) {
-                    closed = true;
-                    doClose();
-                }
-            }
+        // no monitor here: closing returns the connection to the pool, which
+        // may do I/O and would pin the carrier of a virtual thread
+        if (!closed && CLOSING.compareAndSet(this, 0, 1)) {
+            closed = true;
+            doClose();
         }
     }
 
+    /**
+     * Make a closed handle usable again, when the managed connection recycles its handles.
+     */
+    protected void reopen() {
+        generation++;
+        closing = 0;
+        closed = false;
+    }
+
+    /**
+     * Get the number of times this handle has been reopened.  The objects obtained from
+     * a handle can keep it, and refuse to be used once the handle has been handed out again.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
     @SuppressWarnings("unchecked")
     protected void doClose() {
         mc.connectionClosed((CI) this);
@@ -33,6 +33,8 @@ import java.io.PrintWriter;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
 public abstract class AbstractManagedConnection<
         MCF extends AbstractManagedConnectionFactory<MCF, MC, C, CI>,
@@ -44,6 +46,8 @@ public abstract class AbstractManagedConnection<
     protected final MCF mcf;
     protected CI handle;
     protected LinkedList<CI> handles;
+    private CI recycledHandle;
+    private ConnectionEvent closedEvent;
     private ConnectionEventListener listener;
     protected ArrayDeque<ConnectionEventListener> listeners;
     protected final CredentialExtractor credentialExtractor;
@@ -94,6 +98,15 @@ public abstract class AbstractManagedConnection<
 
     protected abstract boolean isValid();
 
+    /**
+     * Abort the physical connection while it is being validated, e.g. when it is blocked on a hung socket.
+     * Default implementation does nothing, the validating thread is only interrupted.
+     *
+     * @param executor the executor to run the abort work on
+     */
+    protected void abort(Executor executor) {
+    }
+
     /**
      * Default implementation dissociates the connection handles.
      * Sub-classes should override to perform any cleanup needed on the physical connection.
@@ -107,12 +120,14 @@ public abstract class AbstractManagedConnection<
         }
         if (handles != null) {
             handles.forEach(AbstractConnectionHandle::cleanup);
-            handles = null;
+            // kept for the next borrower opening several handles
+            handles.clear();
         }
     }
 
     public void destroy() throws ResourceException {
         cleanup();
+        recycledHandle = null;
         listener = null;
         listeners = null;
         closePhysicalConnection();
@@ -123,7 +138,24 @@ public abstract class AbstractManagedConnection<
     }
 
     public void connectionClosed(CI handle) {
-        ConnectionEvent event = new ConnectionEvent(this, ConnectionEvent.CONNECTION_CLOSED);
+        removeHandle(handle);
+        if (mcf.isRecycleHandles()) {
+            // before sending the event, which may give the connection to another thread
+            recycledHandle = handle;
+        }
+        ConnectionEvent event;
+        if (listeners != null) {
+            // other listeners may keep the event
+            event = new ConnectionEvent(this, ConnectionEvent.CONNECTION_CLOSED);
+        } else {
+            // the connection manager alone does not keep the event, but gives the connection
+            // back to the pool, so the event must not be touched anymore once it has been sent
+            event = closedEvent;
+            if (event == null) {
+                event = new ConnectionEvent(this, ConnectionEvent.CONNECTION_CLOSED);
+                closedEvent = event;
+            }
+        }
         event.setConnectionHandle(handle);
         // count down in case sending the event results in a handle getting removed.
         if (listeners != null) {
@@ -248,18 +280,36 @@ public abstract class AbstractManagedConnection<
     protected abstract void closePhysicalConnection() throws ResourceException;
 
     public Object getConnection(Subject subject, ConnectionRequestInfo connectionRequestInfo) throws ResourceException {
-        // Check user first
-        String userName = credentialExtractor.getUserName();
-        CredentialExtractor credential = new CredentialExtractor(subject, connectionRequestInfo, mcf);
-        // Null users are allowed!
-        if (userName != null && !userName.equals(credential.getUserName())) {
-            throw new SecurityException("Password credentials not the same, reauthentication not allowed");
+        // The pool may guarantee that connections are only requested with the credentials
+        // they have been created for
+        if (!mcf.isCredentialsMatchedByPool()) {
+            // Check user first
+            String userName = credentialExtractor.getUserName();
+            CredentialExtractor credential = new CredentialExtractor(subject, connectionRequestInfo, mcf);
+            // Null users are allowed!
+            if (userName != null && !userName.equals(credential.getUserName())) {
+                throw new SecurityException("Password credentials not the same, reauthentication not allowed");
+            }
+            if (userName == null && credential.getUserName() != null) {
+                throw new SecurityException("Password credentials not the same, reauthentication not allowed");
+            }
         }
-        if (userName == null && credential.getUserName() != null) {
-            throw new SecurityException("Password credentials not the same, reauthentication not allowed");
+
+        CI handle = recycledHandle;
+        if (handle != null && Objects.equals(handle.cri, connectionRequestInfo)) {
+            recycledHandle = null;
+            handle.reopen();
+        } else {
+            handle = mcf.createConnectionHandle(connectionRequestInfo, (MC) this);
         }
+        addHandle(handle);
+
+        this.subject = subject;
+        this.cri = connectionRequestInfo;
+        return handle;
+    }
 
-        CI handle = mcf.createConnectionHandle(connectionRequestInfo, (MC) this);
+    private void addHandle(CI handle) {
         if (this.handle == null) {
             this.handle = handle;
         } else {
@@ -268,10 +318,14 @@ public abstract class AbstractManagedConnection<
             }
             handles.add(handle);
         }
+    }
 
-        this.subject = subject;
-        this.cri = connectionRequestInfo;
-        return handle;
+    private void removeHandle(CI handle) {
+        if (this.handle == handle) {
+            this.handle = handles != null ? handles.pollFirst() : null;
+        } else if (handles != null) {
+            handles.remove(handle);
+        }
     }
 
     public ManagedConnectionMetaData getMetaData() throws ResourceException {
@@ -26,8 +26,18 @@ import javax.resource.spi.ValidatingManagedConnectionFactory;
 import javax.security.auth.Subject;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public abstract class AbstractManagedConnectionFactory<
         MCF extends AbstractManagedConnectionFactory<MCF, MC, C, CI>,
@@ -36,9 +46,21 @@ public abstract class AbstractManagedConnectionFactory<
         CI extends AbstractConnectionHandle<MCF, MC, C, CI>>
             implements UserPasswordManagedConnectionFactory, ValidatingManagedConnectionFactory, TransactionSupport {
 
+    private static final int VALIDATION_PENDING = 0;
+    private static final int VALIDATION_VALID = 1;
+    private static final int VALIDATION_INVALID = 2;
+    private static final int VALIDATION_RUNNING = 3;
+
+    private static final AtomicInteger VALIDATION_EXECUTORS = new AtomicInteger();
+
     protected ExceptionSorter exceptionSorter;
     protected String userName;
     protected String password;
+    protected int validationConcurrency = 1;
+    protected long validationBatchTimeout = TimeUnit.SECONDS.toMillis(10);
+    protected boolean recycleHandles;
+    protected boolean credentialsMatchedByPool;
+    private volatile ThreadPoolExecutor validationExecutor;
 
     public AbstractManagedConnectionFactory() {
         this.exceptionSorter = NoExceptionsAreFatalSorter.INSTANCE;
@@ -121,6 +143,71 @@ public abstract class AbstractManagedConnectionFactory<
         }
     }
 
+    public int getValidationConcurrency() {
+        return validationConcurrency;
+    }
+
+    /**
+     * Set the maximum number of connections validated in parallel by {@link #getInvalidConnections(Set)}.
+     *
+     * @param validationConcurrency the number of connections validated in parallel, 1 to validate them one after the other
+     */
+    public synchronized void setValidationConcurrency(int validationConcurrency) {
+        this.validationConcurrency = Math.max(1, validationConcurrency);
+        ThreadPoolExecutor executor = validationExecutor;
+        if (executor != null) {
+            if (this.validationConcurrency > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(this.validationConcurrency);
+                executor.setCorePoolSize(this.validationConcurrency);
+            } else {
+                executor.setCorePoolSize(this.validationConcurrency);
+                executor.setMaximumPoolSize(this.validationConcurrency);
+            }
+        }
+    }
+
+    public long getValidationBatchTimeout() {
+        return validationBatchTimeout;
+    }
+
+    /**
+     * Set the time allowed to validate a set of connections in parallel.  The connections
+     * which have not been validated in time are reported as invalid.
+     *
+     * @param validationBatchTimeout the timeout in milliseconds
+     */
+    public void setValidationBatchTimeout(long validationBatchTimeout) {
+        this.validationBatchTimeout = validationBatchTimeout;
+    }
+
+    public boolean isRecycleHandles() {
+        return recycleHandles;
+    }
+
+    /**
+     * Let managed connections hand out the last closed connection handle again instead of
+     * creating a new one.  A handle must then not be used anymore once it has been closed,
+     * as it may already belong to another borrower.
+     */
+    public void setRecycleHandles(boolean recycleHandles) {
+        this.recycleHandles = recycleHandles;
+    }
+
+    public boolean isCredentialsMatchedByPool() {
+        return credentialsMatchedByPool;
+    }
+
+    /**
+     * Tell the managed connections that the connection manager only hands them out for the
+     * subject and request info they have been created for, so that the credentials do not
+     * need to be extracted and checked again each time a connection handle is requested.
+     * This must only be enabled when the connection manager pools connections separately
+     * for each subject and request info, as the pax-transx connection manager does.
+     */
+    public void setCredentialsMatchedByPool(boolean credentialsMatchedByPool) {
+        this.credentialsMatchedByPool = credentialsMatchedByPool;
+    }
+
     public ExceptionSorter getExceptionSorter() {
         return exceptionSorter;
     }
@@ -149,16 +236,104 @@ public abstract class AbstractManagedConnectionFactory<
 
     @Override
     public Set getInvalidConnections(Set set) throws ResourceException {
-        Set<Object> newSet = new HashSet<>();
+        if (validationConcurrency > 1 && set.size() > 1) {
+            return getInvalidConnectionsConcurrently(set);
+        }
+        Set<Object> invalid = null;
         for (Object o : set) {
             if (o instanceof AbstractManagedConnection) {
                 AbstractManagedConnection mc = (AbstractManagedConnection) o;
                 if (!mc.isValid()) {
-                    newSet.add(o);
+                    if (invalid == null) {
+                        invalid = new HashSet<>();
+                    }
+                    invalid.add(o);
+                }
+            }
+        }
+        return invalid != null ? invalid : Collections.emptySet();
+    }
+
+    private Set getInvalidConnectionsConcurrently(Set<?> set) throws ResourceException {
+        final List<AbstractManagedConnection> connections = new ArrayList<>(set.size());
+        for (Object o : set) {
+            if (o instanceof AbstractManagedConnection) {
+                connections.add((AbstractManagedConnection) o);
+            }
+        }
+        final ThreadPoolExecutor executor = getValidationExecutor();
+        final AtomicIntegerArray states = new AtomicIntegerArray(connections.size());
+        final CountDownLatch done = new CountDownLatch(connections.size());
+        final List<Future<?>> futures = new ArrayList<>(connections.size());
+        for (int i = 0; i < connections.size(); i++) {
+            final int index = i;
+            futures.add(executor.submit(() -> {
+                try {
+                    if (states.compareAndSet(index, VALIDATION_PENDING, VALIDATION_RUNNING)) {
+                        boolean valid = connections.get(index).isValid();
+                        states.compareAndSet(index, VALIDATION_RUNNING, valid ? VALIDATION_VALID : VALIDATION_INVALID);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+        boolean interrupted = false;
+        try {
+            done.await(validationBatchTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        // give up on the validations which have not completed in time, so that they
+        // neither hold the threads of the factory nor keep a broken socket blocked
+        for (int i = 0; i < connections.size(); i++) {
+            if (states.compareAndSet(i, VALIDATION_PENDING, VALIDATION_INVALID)) {
+                futures.get(i).cancel(false);
+            } else if (states.compareAndSet(i, VALIDATION_RUNNING, VALIDATION_INVALID)) {
+                futures.get(i).cancel(true);
+                connections.get(i).abort(executor);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new ResourceException("Interrupted while validating connections");
+        }
+        // connections which could not be validated in time are most likely broken
+        Set<Object> invalid = null;
+        for (int i = 0; i < connections.size(); i++) {
+            if (states.get(i) != VALIDATION_VALID) {
+                if (invalid == null) {
+                    invalid = new HashSet<>();
+                }
+                invalid.add(connections.get(i));
+            }
+        }
+        return invalid != null ? invalid : Collections.emptySet();
+    }
+
+    /**
+     * The threads validating the connections of this factory in parallel, at most
+     * {@link #getValidationConcurrency()} of them, which are only kept while validations are running.
+     */
+    private ThreadPoolExecutor getValidationExecutor() {
+        ThreadPoolExecutor executor = validationExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = validationExecutor;
+                if (executor == null) {
+                    AtomicInteger count = new AtomicInteger();
+                    String name = "pax-transx connection validator " + VALIDATION_EXECUTORS.incrementAndGet() + "-";
+                    executor = new ThreadPoolExecutor(validationConcurrency, validationConcurrency, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, name + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    validationExecutor = executor;
                 }
             }
         }
-        return newSet;
+        return executor;
     }
 
     protected Class<?> loadClass(String name) throws ClassNotFoundException {
@@ -0,0 +1,40 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector;
+
+import javax.resource.spi.ConnectionManager;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.ManagedConnectionFactory;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A connection manager which can allocate connections without blocking
+ * the calling thread while waiting for the pool.
+ */
+public interface AsyncConnectionManager extends ConnectionManager {
+
+    /**
+     * Asynchronous version of {@link #allocateConnection(ManagedConnectionFactory, ConnectionRequestInfo)}.
+     *
+     * The subject and the transaction are those of the calling thread.  The returned stage
+     * completes exceptionally with a {@link javax.resource.ResourceException} if no connection
+     * becomes available in time.  Cancelling it gives the connection back to the pool.
+     */
+    CompletionStage<Object> allocateConnectionAsync(ManagedConnectionFactory managedConnectionFactory,
+                                                    ConnectionRequestInfo connectionRequestInfo);
+
+}
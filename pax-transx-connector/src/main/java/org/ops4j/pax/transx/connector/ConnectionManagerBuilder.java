@@ -17,12 +17,18 @@
 package org.ops4j.pax.transx.connector;
 
 import org.ops4j.pax.transx.connector.impl.GenericConnectionManager;
+import org.ops4j.pax.transx.connector.impl.VirtualThreads;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTracker;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTrackerFactory;
 import org.ops4j.pax.transx.tm.TransactionManager;
 
 import javax.resource.spi.ConnectionManager;
+import javax.resource.spi.ConnectionRequestInfo;
 import javax.resource.spi.ManagedConnectionFactory;
 import javax.resource.spi.TransactionSupport;
 import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import java.time.Duration;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 import static java.util.concurrent.TimeUnit.*;
@@ -35,6 +41,9 @@ public class ConnectionManagerBuilder {
     private static final long HOUSE_KEEPING_PERIOD = SECONDS.toMillis(30);
     private static final long ALIVE_BYPASS_WINDOW = MILLISECONDS.toMillis(500);
     private static final int DEFAULT_POOL_SIZE = 10;
+    private static final long ADAPTIVE_WAIT_THRESHOLD = MILLISECONDS.toMillis(50);
+    private static final int ADAPTIVE_WAITING_THRESHOLD = 1;
+    private static final int WARM_UP_CONCURRENCY = 4;
 
     private static final Logger LOG = Logger.getLogger(ConnectionManagerBuilder.class.getName());
 
@@ -51,6 +60,29 @@ public class ConnectionManagerBuilder {
     private long maxLifetime = MAX_LIFETIME;
     private long aliveBypassWindow = ALIVE_BYPASS_WINDOW;
     private long houseKeepingPeriod =  HOUSE_KEEPING_PERIOD;
+    private PoolEngine.Factory poolEngine;
+    private boolean virtualThreads;
+    private Executor asyncExecutor;
+    private boolean adaptiveSizing;
+    private long adaptiveWaitThreshold = ADAPTIVE_WAIT_THRESHOLD;
+    private int adaptiveWaitingThreshold = ADAPTIVE_WAITING_THRESHOLD;
+    private boolean warmUp;
+    private int warmUpConcurrency = WARM_UP_CONCURRENCY;
+    private long warmUpTimeout = -1;
+    private ConnectionRequestInfo warmUpRequestInfo;
+    private int creationRate;
+    private int creationBurst = -1;
+    private PoolMetricsTrackerFactory metricsTrackerFactory;
+    private boolean registerMBean;
+    private long leakDetectionThreshold;
+    private double leakDetectionSampleRate;
+    private boolean leakReclaim;
+    private long keepaliveTime;
+    private int maxTotalConnections;
+    private int maxSubPools;
+    private long subPoolIdleTimeout;
+    private PoolRuntime poolRuntime;
+    private boolean deferredReset;
 
     private ConnectionManagerBuilder() {
     }
@@ -79,6 +111,15 @@ public class ConnectionManagerBuilder {
         return this;
     }
 
+    /**
+     * The source of the subject to get connections for, when they are not all opened
+     * with the same credentials.  Connections are pooled separately for each subject.
+     */
+    public ConnectionManagerBuilder subjectSource(SubjectSource subjectSource) {
+        this.subjectSource = subjectSource;
+        return this;
+    }
+
     public ConnectionManagerBuilder minIdle(int minSize) {
         this.minIdle = minSize;
         return this;
@@ -114,6 +155,222 @@ public class ConnectionManagerBuilder {
         return this;
     }
 
+    /**
+     * The engine used to store and hand out the pooled connections.
+     * Defaults to {@link PoolEngines#BAG}, or {@link PoolEngines#FIFO} when using virtual threads.
+     *
+     * @see PoolEngines
+     */
+    public ConnectionManagerBuilder poolEngine(PoolEngine.Factory poolEngine) {
+        this.poolEngine = poolEngine;
+        return this;
+    }
+
+    /**
+     * Run the connection adder and closer on virtual threads.
+     * Ignored with a warning if the JVM does not support them.
+     */
+    public ConnectionManagerBuilder virtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * The executor used to complete asynchronous allocations, once a connection has been
+     * handed over by the pool.  Completing an allocation may validate the connection and
+     * enlist it in the transaction, so this should not be a pool shared with CPU bound tasks.
+     * Defaults to a dedicated executor with at most maxPoolSize threads.
+     *
+     * @see AsyncConnectionManager
+     */
+    public ConnectionManagerBuilder asyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * Let the housekeeper size the pool between minIdle and maxPoolSize from the observed demand,
+     * instead of keeping minIdle idle connections at all times.  When enabled, minIdle defaults to 0.
+     */
+    public ConnectionManagerBuilder adaptiveSizing(boolean adaptiveSizing) {
+        this.adaptiveSizing = adaptiveSizing;
+        return this;
+    }
+
+    /**
+     * With adaptive sizing, the pool grows when borrowing a connection takes longer than this, in milliseconds.
+     */
+    public ConnectionManagerBuilder adaptiveWaitThreshold(long adaptiveWaitThreshold) {
+        this.adaptiveWaitThreshold = adaptiveWaitThreshold;
+        return this;
+    }
+
+    /**
+     * With adaptive sizing, the pool grows when at least this number of threads are waiting for a connection.
+     */
+    public ConnectionManagerBuilder adaptiveWaitingThreshold(int adaptiveWaitingThreshold) {
+        this.adaptiveWaitingThreshold = adaptiveWaitingThreshold;
+        return this;
+    }
+
+    /**
+     * Open minIdle connections when building the connection manager, instead of
+     * lazily on the first run of the housekeeper.  The build waits until they are
+     * available, or at most warmUpTimeout.
+     */
+    public ConnectionManagerBuilder warmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+        return this;
+    }
+
+    /**
+     * Maximum number of connections opened in parallel during the warm-up.
+     */
+    public ConnectionManagerBuilder warmUpConcurrency(int warmUpConcurrency) {
+        this.warmUpConcurrency = warmUpConcurrency;
+        return this;
+    }
+
+    /**
+     * Maximum time to wait for the warm-up, in milliseconds.  Defaults to the connection timeout.
+     */
+    public ConnectionManagerBuilder warmUpTimeout(long warmUpTimeout) {
+        this.warmUpTimeout = warmUpTimeout;
+        return this;
+    }
+
+    /**
+     * The request info of the pool to warm up, which should be the one used
+     * by the connection factory when no credentials are given.
+     */
+    public ConnectionManagerBuilder warmUpRequestInfo(ConnectionRequestInfo warmUpRequestInfo) {
+        this.warmUpRequestInfo = warmUpRequestInfo;
+        return this;
+    }
+
+    /**
+     * Maximum number of physical connections created per second, across all the sub-pools.
+     * Defaults to 0, i.e. no limit.
+     */
+    public ConnectionManagerBuilder creationRate(int creationRate) {
+        this.creationRate = creationRate;
+        return this;
+    }
+
+    /**
+     * Number of physical connections which can be created at once when the creation rate is limited.
+     * Defaults to the warm-up concurrency.
+     */
+    public ConnectionManagerBuilder creationBurst(int creationBurst) {
+        this.creationBurst = creationBurst;
+        return this;
+    }
+
+    /**
+     * Factory for the trackers recording the metrics of each sub-pool, see the
+     * {@code metrics.micrometer} and {@code metrics.dropwizard} packages.
+     * Defaults to no metrics.
+     */
+    public ConnectionManagerBuilder metricsTrackerFactory(PoolMetricsTrackerFactory metricsTrackerFactory) {
+        this.metricsTrackerFactory = metricsTrackerFactory;
+        return this;
+    }
+
+    /**
+     * Register a {@link PoolMXBean} for the pool in the platform MBean server.
+     * Defaults to false.
+     */
+    public ConnectionManagerBuilder registerMBean(boolean registerMBean) {
+        this.registerMBean = registerMBean;
+        return this;
+    }
+
+    /**
+     * Time after which a connection which has not been given back to the pool is reported as leaked.
+     * Defaults to 0, i.e. no leak detection.
+     */
+    public ConnectionManagerBuilder leakDetectionThreshold(long leakDetectionThreshold) {
+        this.leakDetectionThreshold = leakDetectionThreshold;
+        return this;
+    }
+
+    /**
+     * Fraction of the borrows, between 0 and 1, for which the stack trace of the borrower
+     * is captured and logged if the connection leaks.  Defaults to 0.
+     */
+    public ConnectionManagerBuilder leakDetectionSampleRate(double leakDetectionSampleRate) {
+        this.leakDetectionSampleRate = leakDetectionSampleRate;
+        return this;
+    }
+
+    /**
+     * Close the physical connection of leaked connections, unless they are enlisted in a transaction.
+     * Defaults to false.
+     */
+    public ConnectionManagerBuilder leakReclaim(boolean leakReclaim) {
+        this.leakReclaim = leakReclaim;
+        return this;
+    }
+
+    /**
+     * Validate idle connections in the background once they have not been used nor validated
+     * for this time, instead of validating them when borrowed.  The connections due at each house
+     * keeping run are handed to the factory as one batch, which decides how many of them it validates
+     * in parallel.  Defaults to 0, i.e. disabled.
+     */
+    public ConnectionManagerBuilder keepaliveTime(long keepaliveTime) {
+        this.keepaliveTime = keepaliveTime;
+        return this;
+    }
+
+    /**
+     * Maximum number of connections across all the sub-pools, i.e. all the subjects and request infos.
+     * When reached, each sub-pool is guaranteed a fair share of the connections.  Defaults to 0, i.e. no limit
+     * other than maxPoolSize for each sub-pool.
+     */
+    public ConnectionManagerBuilder maxTotalConnections(int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+        return this;
+    }
+
+    /**
+     * Maximum number of sub-pools, above which the least recently used sub-pools which are not
+     * in use are closed.  Defaults to 0, i.e. no limit.
+     */
+    public ConnectionManagerBuilder maxSubPools(int maxSubPools) {
+        this.maxSubPools = maxSubPools;
+        return this;
+    }
+
+    /**
+     * Close the sub-pools which are not in use and have not been used for this time.
+     * Defaults to 0, i.e. sub-pools are kept.
+     */
+    public ConnectionManagerBuilder subPoolIdleTimeout(long subPoolIdleTimeout) {
+        this.subPoolIdleTimeout = subPoolIdleTimeout;
+        return this;
+    }
+
+    /**
+     * Share the housekeeper and the threads creating and closing connections with the other
+     * connection managers built with the same runtime, and count the connections against its limit.
+     * Defaults to null, i.e. the connection manager has its own threads.
+     */
+    public ConnectionManagerBuilder poolRuntime(PoolRuntime poolRuntime) {
+        this.poolRuntime = poolRuntime;
+        return this;
+    }
+
+    /**
+     * Clean up the connections given back by the application in the background, so that closing
+     * a connection handle does not wait for the round-trips of the cleanup.  The connections go
+     * back to the pool once cleaned up.  Defaults to false.
+     */
+    public ConnectionManagerBuilder deferredReset(boolean deferredReset) {
+        this.deferredReset = deferredReset;
+        return this;
+    }
+
     public ConnectionManager build() throws Exception {
         if (transactionManager == null && transaction != TransactionSupportLevel.NoTransaction) {
             throw new IllegalArgumentException("transactionManager must be set");
@@ -150,11 +407,67 @@ public class ConnectionManagerBuilder {
         if (maxPoolSize < 1) {
             maxPoolSize = (minIdle <= 0) ? DEFAULT_POOL_SIZE : minIdle;
         }
+        if (adaptiveSizing && minIdle < 0) {
+            minIdle = 0;
+        }
         if (minIdle < 0 || minIdle > maxPoolSize) {
             minIdle = maxPoolSize;
         }
+        if (adaptiveWaitThreshold < 0) {
+            LOG.warning(() -> poolName + " - adaptiveWaitThreshold is negative, setting to default " + ADAPTIVE_WAIT_THRESHOLD + "ms.");
+            adaptiveWaitThreshold = ADAPTIVE_WAIT_THRESHOLD;
+        }
+        if (adaptiveWaitingThreshold < 1) {
+            LOG.warning(() -> poolName + " - adaptiveWaitingThreshold is less than 1, setting to default " + ADAPTIVE_WAITING_THRESHOLD + ".");
+            adaptiveWaitingThreshold = ADAPTIVE_WAITING_THRESHOLD;
+        }
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            LOG.warning(() -> poolName + " - virtual threads are not supported by this JVM, using platform threads.");
+            virtualThreads = false;
+        }
+        if (warmUpConcurrency < 1) {
+            LOG.warning(() -> poolName + " - warmUpConcurrency is less than 1, setting to default " + WARM_UP_CONCURRENCY + ".");
+            warmUpConcurrency = WARM_UP_CONCURRENCY;
+        }
+        if (creationRate < 0) {
+            LOG.warning(() -> poolName + " - creationRate is negative, disabling it.");
+            creationRate = 0;
+        }
+        if (creationBurst < 1) {
+            creationBurst = warmUpConcurrency;
+        }
+        if (leakDetectionThreshold != 0 && (leakDetectionThreshold < SECONDS.toMillis(2)
+                || (maxLifetime > 0 && leakDetectionThreshold > maxLifetime))) {
+            LOG.warning(() -> poolName + " - leakDetectionThreshold is less than 2000ms or more than maxLifetime, disabling it.");
+            leakDetectionThreshold = 0;
+        }
+        if (leakDetectionSampleRate < 0.0 || leakDetectionSampleRate > 1.0) {
+            LOG.warning(() -> poolName + " - leakDetectionSampleRate is not between 0 and 1, disabling stack traces.");
+            leakDetectionSampleRate = 0.0;
+        }
+        if (keepaliveTime != 0 && (keepaliveTime < SECONDS.toMillis(30)
+                || (maxLifetime > 0 && keepaliveTime >= maxLifetime))) {
+            LOG.warning(() -> poolName + " - keepaliveTime is less than 30000ms or not less than maxLifetime, disabling it.");
+            keepaliveTime = 0;
+        }
+        if (maxTotalConnections < 0) {
+            maxTotalConnections = 0;
+        }
+        if (maxSubPools < 0) {
+            maxSubPools = 0;
+        }
+        if (subPoolIdleTimeout < 0) {
+            subPoolIdleTimeout = 0;
+        }
+        if (warmUpTimeout < 0) {
+            warmUpTimeout = connectionTimeout;
+        }
+        if (poolEngine == null) {
+            // the bag spins while handing off to waiters, which starves carriers when waiters are virtual threads
+            poolEngine = virtualThreads ? PoolEngines.FIFO : PoolEngines.BAG;
+        }
 
-        return new GenericConnectionManager(
+        GenericConnectionManager cm = new GenericConnectionManager(
                 transactionManager,
                 transaction,
                 subjectSource,
@@ -168,8 +481,32 @@ public class ConnectionManagerBuilder {
                 idleTimeout,
                 maxLifetime,
                 aliveBypassWindow,
-                houseKeepingPeriod
+                houseKeepingPeriod,
+                poolEngine,
+                virtualThreads,
+                asyncExecutor,
+                adaptiveSizing,
+                adaptiveWaitThreshold,
+                adaptiveWaitingThreshold,
+                warmUpConcurrency,
+                creationRate,
+                creationBurst,
+                metricsTrackerFactory != null ? metricsTrackerFactory : (p, s, stats) -> PoolMetricsTracker.NOOP,
+                registerMBean,
+                leakDetectionThreshold,
+                leakDetectionSampleRate,
+                leakReclaim,
+                keepaliveTime,
+                maxTotalConnections,
+                maxSubPools,
+                subPoolIdleTimeout,
+                poolRuntime,
+                deferredReset
         );
+        if (warmUp && !cm.prefill(warmUpRequestInfo, Duration.ofMillis(warmUpTimeout))) {
+            LOG.warning(() -> poolName + " - warm-up did not complete within " + warmUpTimeout + "ms, the pool will keep filling in the background.");
+        }
+        return cm;
     }
 
     private static int generatePoolNumber() {
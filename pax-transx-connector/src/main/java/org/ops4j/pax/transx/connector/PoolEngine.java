@@ -0,0 +1,142 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage for the physical connections of a pool.
+ *
+ * The engine decides in which order idle connections are handed out and how
+ * waiting threads are served when none is available. Entries carry their own
+ * state which is only modified through compare-and-set, so that borrowing,
+ * returning, reserving and removing an entry never race with each other.
+ *
+ * @param <T> the pool entries
+ */
+public interface PoolEngine<T extends PoolEngine.Entry> {
+
+    int STATE_NOT_IN_USE = 0;
+    int STATE_IN_USE = 1;
+    int STATE_REMOVED = -1;
+    int STATE_RESERVED = -2;
+
+    /**
+     * An entry of the pool.
+     */
+    interface Entry {
+
+        int getState();
+
+        boolean compareAndSet(int expect, int update);
+
+        void setState(int update);
+
+    }
+
+    /**
+     * Notified when a thread has to wait for an entry, so that the pool
+     * can create a new connection if it is allowed to.
+     */
+    interface Listener {
+
+        Future<Boolean> addItem(int waiting);
+
+    }
+
+    /**
+     * Creates an engine for each sub-pool of a connection manager.
+     */
+    interface Factory {
+
+        <T extends Entry> PoolEngine<T> create(Listener listener);
+
+    }
+
+    /**
+     * Borrow an idle entry, waiting up to the given timeout.
+     *
+     * @return the entry, now in use, or null if the timeout expired
+     */
+    T borrow(long timeout, TimeUnit timeUnit) throws InterruptedException;
+
+    /**
+     * Borrow an idle entry without blocking the calling thread.
+     *
+     * The returned future completes with the entry, now in use, or with null if the timeout
+     * expired. Cancelling the future gives up the wait, the engine takes care of entries
+     * which are handed over concurrently.
+     *
+     * @param scheduler used to expire the request
+     */
+    CompletableFuture<T> borrowAsync(long timeout, TimeUnit timeUnit, ScheduledExecutorService scheduler);
+
+    /**
+     * Give back a borrowed entry.
+     */
+    void requite(T entry);
+
+    /**
+     * Add a new idle entry.
+     */
+    void add(T entry);
+
+    /**
+     * Remove an entry which has been borrowed or reserved.
+     *
+     * @return true if the entry was removed
+     */
+    boolean remove(T entry);
+
+    /**
+     * Reserve an idle entry so that it can not be borrowed, usually before removing it.
+     *
+     * @return true if the entry was idle and is now reserved
+     */
+    boolean reserve(T entry);
+
+    /**
+     * Make a reserved entry available again.
+     */
+    void unreserve(T entry);
+
+    /**
+     * The entries currently in the given state.
+     */
+    List<T> values(int state);
+
+    /**
+     * All the entries.
+     */
+    List<T> values();
+
+    int getCount(int state);
+
+    int getWaitingThreadCount();
+
+    int size();
+
+    /**
+     * Close the engine, new entries are rejected afterwards.
+     */
+    void close();
+
+}
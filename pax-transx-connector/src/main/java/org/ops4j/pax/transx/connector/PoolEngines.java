@@ -0,0 +1,49 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector;
+
+import org.ops4j.pax.transx.connector.impl.BagPoolEngine;
+import org.ops4j.pax.transx.connector.impl.FifoPoolEngine;
+import org.ops4j.pax.transx.connector.impl.StripedPoolEngine;
+
+/**
+ * The built-in pool engines.
+ */
+public final class PoolEngines {
+
+    /**
+     * HikariCP's ConcurrentBag: thread-local affinity with a shared list and direct hand-off to waiters.
+     * This is the default and a good fit for most workloads.
+     */
+    public static final PoolEngine.Factory BAG = BagPoolEngine::new;
+
+    /**
+     * Idle connections are spread over per-core stripes, borrowers look into their own stripe
+     * first and steal from the other ones on a miss. Suited to many short borrows from a lot of threads.
+     */
+    public static final PoolEngine.Factory STRIPED = StripedPoolEngine::new;
+
+    /**
+     * Strict first-in first-out ordering of both idle connections and waiting threads.
+     * Suited to long running borrowers which must not be starved by bursts of new requests.
+     */
+    public static final PoolEngine.Factory FIFO = FifoPoolEngine::new;
+
+    private PoolEngines() {
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector;
+
+import org.ops4j.pax.transx.connector.metrics.PoolStats;
+
+import java.util.Map;
+
+/**
+ * Management interface of a connection manager's pool.
+ *
+ * A connection manager keeps one sub-pool for each subject / request info, the
+ * connection counts are summed over all of them and the sizes apply to each one.
+ * Size changes are applied by the next housekeeping run, timeout changes by the next borrows.
+ */
+public interface PoolMXBean {
+
+    String getPoolName();
+
+    int getTotalConnections();
+
+    int getIdleConnections();
+
+    int getActiveConnections();
+
+    int getThreadsAwaitingConnection();
+
+    /**
+     * Statistics of each sub-pool, by sub-pool name.
+     */
+    Map<String, PoolStats> getSubPools();
+
+    int getMaxPoolSize();
+
+    void setMaxPoolSize(int maxPoolSize);
+
+    int getMinIdle();
+
+    void setMinIdle(int minIdle);
+
+    long getIdleTimeout();
+
+    void setIdleTimeout(long idleTimeout);
+
+    long getConnectionTimeout();
+
+    void setConnectionTimeout(long connectionTimeout);
+
+    /**
+     * The number of connections which have been reported as leaked.
+     */
+    long getLeakedConnectionCount();
+
+    /**
+     * Evict all the connections, idle ones are closed immediately and active ones when given back.
+     */
+    void softEvictConnections();
+
+    /**
+     * Stop handing out and creating connections, borrowers wait until the pool is resumed
+     * or the connection timeout expires.
+     */
+    void suspendPool();
+
+    void resumePool();
+
+    boolean isSuspended();
+
+}
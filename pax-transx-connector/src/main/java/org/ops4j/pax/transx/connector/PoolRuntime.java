@@ -0,0 +1,304 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector;
+
+import com.zaxxer.hikari.util.UtilityElf;
+import org.ops4j.pax.transx.connector.impl.VirtualThreads;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Threads and limits shared by several connection managers.
+ *
+ * By default, each connection manager has its own housekeeper, connection adder, connection
+ * closer, keepalive and warm-up threads.  Connection managers built with the same runtime share
+ * a single housekeeper, a bounded number of threads for each of these tasks, and optionally a
+ * limit on the number of physical connections they open altogether.
+ *
+ * The runtime must be closed once all the connection managers using it have been closed.
+ */
+public final class PoolRuntime implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(PoolRuntime.class.getName());
+
+    private final String name;
+    private final int maxConnections;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ThreadPoolExecutor creationExecutor;
+    private final ThreadPoolExecutor closeExecutor;
+    private final ThreadPoolExecutor keepaliveExecutor;
+    private final ThreadPoolExecutor warmUpExecutor;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final List<Member> members = new CopyOnWriteArrayList<>();
+    private final Map<Member, Integer> reservedIdle = new ConcurrentHashMap<>();
+    private volatile boolean contended;
+
+    private PoolRuntime(Builder builder) {
+        this.name = builder.name;
+        this.maxConnections = builder.maxConnections;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new UtilityElf.DefaultThreadFactory(name + " housekeeper", true),
+                new ThreadPoolExecutor.DiscardPolicy());
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.creationExecutor = createExecutor(builder, name + " connection adder", new ThreadPoolExecutor.DiscardPolicy());
+        // connections must be closed even once the runtime is shut down
+        this.closeExecutor = createExecutor(builder, name + " connection closer", new ThreadPoolExecutor.CallerRunsPolicy());
+        this.keepaliveExecutor = createExecutor(builder, name + " keepalive", new ThreadPoolExecutor.DiscardPolicy());
+        this.warmUpExecutor = createExecutor(builder, name + " warm-up", new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static ThreadPoolExecutor createExecutor(Builder builder, String name, RejectedExecutionHandler handler) {
+        final ThreadFactory threadFactory = builder.virtualThreads ? VirtualThreads.factory(name)
+                : new UtilityElf.DefaultThreadFactory(name, true);
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(builder.threads, builder.threads, 5L, SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory, handler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The scheduler running the housekeeping tasks and timeouts.
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public ExecutorService getCreationExecutor() {
+        return creationExecutor;
+    }
+
+    public ExecutorService getCloseExecutor() {
+        return closeExecutor;
+    }
+
+    /**
+     * The threads validating idle connections in the background.
+     */
+    public ExecutorService getKeepaliveExecutor() {
+        return keepaliveExecutor;
+    }
+
+    /**
+     * The threads filling the pools when they are built or resumed.
+     */
+    public ExecutorService getWarmUpExecutor() {
+        return warmUpExecutor;
+    }
+
+    /**
+     * The maximum number of physical connections of all the connection managers, or 0 for no limit.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    /**
+     * Take one of the physical connections allowed.  When the limit is reached, an idle connection
+     * of another member is closed so that the connection can be opened once it is released.  Members
+     * only give up the idle connections they have above their minimum.
+     *
+     * @return false if the maximum number of connections is reached
+     */
+    public boolean acquireConnection(Member member) {
+        if (maxConnections <= 0) {
+            return true;
+        }
+        for (;;) {
+            final int total = totalConnections.get();
+            if (total >= maxConnections) {
+                break;
+            }
+            if (totalConnections.compareAndSet(total, total + 1)) {
+                return true;
+            }
+        }
+        contended = true;
+        for (Member other : members) {
+            if (other != member && other.evictIdleConnection()) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reserve the minimum number of idle connections of a member.  The minimums of all the members
+     * must fit in the maximum number of connections, otherwise they would keep closing each other's
+     * connections to open their own.
+     *
+     * @return the number of connections reserved, less than asked if there is not enough room left
+     */
+    public synchronized int reserveMinIdle(Member member, int minIdle) {
+        int reserved = minIdle;
+        if (maxConnections > 0) {
+            final int others = reservedIdle.entrySet()
+                    .stream()
+                    .filter(e -> e.getKey() != member)
+                    .mapToInt(Map.Entry::getValue)
+                    .sum();
+            reserved = Math.max(0, Math.min(minIdle, maxConnections - others));
+        }
+        reservedIdle.put(member, reserved);
+        return reserved;
+    }
+
+    /**
+     * Give back a physical connection, and let the members which could not open one
+     * know that they can try again.
+     */
+    public void releaseConnection() {
+        if (maxConnections <= 0) {
+            return;
+        }
+        totalConnections.decrementAndGet();
+        if (contended) {
+            contended = false;
+            members.forEach(Member::connectionReleased);
+        }
+    }
+
+    public void register(Member member) {
+        members.add(member);
+    }
+
+    public void unregister(Member member) {
+        members.remove(member);
+        reservedIdle.remove(member);
+    }
+
+    @Override
+    public void close() throws Exception {
+        creationExecutor.shutdown();
+        creationExecutor.awaitTermination(5L, SECONDS);
+        scheduler.shutdownNow();
+        keepaliveExecutor.shutdownNow();
+        warmUpExecutor.shutdown();
+        closeExecutor.shutdown();
+        closeExecutor.awaitTermination(5L, SECONDS);
+        if (!members.isEmpty()) {
+            LOG.warning(() -> name + " - Closed while still used by " + members.size() + " connection managers");
+        }
+    }
+
+    /**
+     * A connection manager using the runtime.
+     */
+    public interface Member {
+
+        /**
+         * Called when a connection has been released while the maximum number of connections was reached.
+         */
+        void connectionReleased();
+
+        /**
+         * Close one idle connection to make room for another member, unless this would leave
+         * the member with less idle connections than its minimum.
+         *
+         * @return false if there is no idle connection to spare
+         */
+        boolean evictIdleConnection();
+
+    }
+
+    public static final class Builder {
+
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        private String name;
+        private int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        private int maxConnections;
+        private boolean virtualThreads;
+
+        private Builder() {
+        }
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Maximum number of threads creating connections, and likewise of the threads closing,
+         * validating and warming up connections.  Defaults to the number of processors, and at least 2.
+         */
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Maximum number of physical connections of all the connection managers.
+         * Defaults to 0, i.e. no limit.
+         */
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Create and close connections on virtual threads.  Defaults to false.
+         */
+        public Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        public PoolRuntime build() {
+            if (name == null) {
+                name = "TransxRuntime-" + COUNTER.incrementAndGet();
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+            if (maxConnections < 0) {
+                maxConnections = 0;
+            }
+            if (virtualThreads && !VirtualThreads.isSupported()) {
+                LOG.warning(() -> name + " - virtual threads are not supported by this JVM, using platform threads.");
+                virtualThreads = false;
+            }
+            return new PoolRuntime(this);
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.impl;
+
+import com.zaxxer.hikari.util.ConcurrentBag;
+import org.ops4j.pax.transx.connector.PoolEngine;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool engine backed by HikariCP's ConcurrentBag.
+ *
+ * The bag works on its own entry interface: entries handed to this engine
+ * must also implement {@link ConcurrentBag.IConcurrentBagEntry}, which is the
+ * case for the connections of {@link GenericConnectionManager}.
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class BagPoolEngine<T extends PoolEngine.Entry> implements PoolEngine<T> {
+
+    private final ConcurrentBag bag;
+    private final Listener listener;
+    private final ConcurrentLinkedQueue<Waiter<T>> asyncWaiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger asyncWaiting = new AtomicInteger();
+
+    public BagPoolEngine(Listener listener) {
+        this.bag = new ConcurrentBag(listener::addItem);
+        this.listener = listener;
+    }
+
+    @Override
+    public T borrow(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return (T) bag.borrow(timeout, timeUnit);
+    }
+
+    /**
+     * The bag only knows about blocked threads, so asynchronous borrowers wait in a queue
+     * of their own, which is served first when entries are given back or added.
+     */
+    @Override
+    public CompletableFuture<T> borrowAsync(long timeout, TimeUnit timeUnit, ScheduledExecutorService scheduler) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T entry = poll();
+        if (entry != null) {
+            future.complete(entry);
+            return future;
+        }
+
+        final Waiter<T> waiter = Waiter.async(future);
+        asyncWaiters.offer(waiter);
+        final int waiting = asyncWaiting.incrementAndGet() + bag.getWaitingThreadCount();
+        future.whenComplete((e, t) -> {
+            waiter.cancel();
+            asyncWaiting.decrementAndGet();
+            asyncWaiters.remove(waiter);
+        });
+
+        // an entry may have been returned before we were visible to releasers
+        entry = poll();
+        if (entry != null) {
+            if (!waiter.cancel() || !future.complete(entry)) {
+                requite(entry);
+            }
+            return future;
+        }
+
+        listener.addItem(waiting);
+
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (waiter.cancel()) {
+                future.complete(null);
+            }
+        }, timeout, timeUnit);
+        future.whenComplete((e, t) -> timer.cancel(false));
+        return future;
+    }
+
+    /**
+     * Take an idle entry from the bag without waiting nor asking for a new one.
+     */
+    private T poll() {
+        for (Object entry : bag.values(STATE_NOT_IN_USE)) {
+            if (((T) entry).compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+                return (T) entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hand an entry in use to the oldest asynchronous waiter.
+     *
+     * @return false if there is no waiter left
+     */
+    private boolean handOff(T entry) {
+        Waiter<T> waiter;
+        while (asyncWaiting.get() > 0 && (waiter = asyncWaiters.poll()) != null) {
+            if (waiter.offer(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void requite(T entry) {
+        if (!handOff(entry)) {
+            bag.requite(asBagEntry(entry));
+        }
+    }
+
+    @Override
+    public void add(T entry) {
+        bag.add(asBagEntry(entry));
+        if (asyncWaiting.get() > 0 && entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+            requite(entry);
+        }
+    }
+
+    @Override
+    public boolean remove(T entry) {
+        return bag.remove(asBagEntry(entry));
+    }
+
+    @Override
+    public boolean reserve(T entry) {
+        return bag.reserve(asBagEntry(entry));
+    }
+
+    @Override
+    public void unreserve(T entry) {
+        bag.unreserve(asBagEntry(entry));
+    }
+
+    @Override
+    public List<T> values(int state) {
+        return bag.values(state);
+    }
+
+    @Override
+    public List<T> values() {
+        return bag.values();
+    }
+
+    @Override
+    public int getCount(int state) {
+        return bag.getCount(state);
+    }
+
+    @Override
+    public int getWaitingThreadCount() {
+        return bag.getWaitingThreadCount() + asyncWaiting.get();
+    }
+
+    @Override
+    public int size() {
+        return bag.size();
+    }
+
+    @Override
+    public void close() {
+        bag.close();
+    }
+
+    private static ConcurrentBag.IConcurrentBagEntry asBagEntry(Entry entry) {
+        return (ConcurrentBag.IConcurrentBagEntry) entry;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.impl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Limits the creation of physical connections across all the sub-pools of a connection manager.
+ *
+ * Creations are rate limited by a token bucket, kept in its virtual scheduling form: a single
+ * timestamp at which the bucket will be full again.  When a creation fails, all creations are
+ * held back for a jittered, exponentially growing delay, so that pools do not hammer a database
+ * which is restarting and do not all retry at the same instant once it is back.
+ */
+final class CreationLimiter {
+
+    private static final long INITIAL_BACKOFF = MILLISECONDS.toNanos(250);
+
+    private final long interval;
+    private final long tolerance;
+    private final long maxBackoff;
+    private final AtomicLong tat = new AtomicLong(System.nanoTime());
+    private final LongAdder throttled = new LongAdder();
+
+    private volatile long backoff;
+    private volatile long backoffUntil = System.nanoTime();
+
+    /**
+     * @param rate the maximum number of creations per second, or 0 for no limit
+     * @param burst the number of creations allowed at once
+     * @param maxBackoff the maximum delay after failures, in milliseconds
+     */
+    CreationLimiter(int rate, int burst, long maxBackoff) {
+        this.interval = rate > 0 ? SECONDS.toNanos(1) / rate : 0L;
+        this.tolerance = interval * (Math.max(1, burst) - 1);
+        this.maxBackoff = Math.max(INITIAL_BACKOFF, MILLISECONDS.toNanos(maxBackoff));
+    }
+
+    /**
+     * Try to get a permit for a new connection.
+     *
+     * @return 0 if the connection can be created, or the number of milliseconds to wait before trying again
+     */
+    long acquire() {
+        final long now = System.nanoTime();
+        final long backoffDelay = backoffUntil - now;
+        if (backoffDelay > 0L) {
+            throttled.increment();
+            return toMillis(backoffDelay);
+        }
+        if (interval == 0L) {
+            return 0L;
+        }
+        for (;;) {
+            final long tat = this.tat.get();
+            final long base = Math.max(tat, now);
+            final long wait = base - tolerance - now;
+            if (wait > 0L) {
+                throttled.increment();
+                return toMillis(wait);
+            }
+            if (this.tat.compareAndSet(tat, base + interval)) {
+                return 0L;
+            }
+        }
+    }
+
+    void success() {
+        if (backoff != 0L) {
+            backoff = 0L;
+        }
+    }
+
+    void failure() {
+        final long now = System.nanoTime();
+        if (now - backoffUntil < 0L) {
+            // another creation already failed and pushed everyone back
+            return;
+        }
+        final long backoff = this.backoff == 0L ? INITIAL_BACKOFF : Math.min(maxBackoff, this.backoff * 3 / 2);
+        this.backoff = backoff;
+        this.backoffUntil = now + backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /**
+     * The number of creation attempts which have been held back.
+     */
+    long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    private static long toMillis(long nanos) {
+        return Math.max(1L, NANOSECONDS.toMillis(nanos + 999_999L));
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.impl;
+
+import org.ops4j.pax.transx.connector.PoolEngine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Pool engine with strict first-in first-out ordering.
+ *
+ * Idle entries are handed out in the order they were returned, and a returned entry
+ * always goes to the thread which has been waiting the longest: new borrowers can
+ * not barge in front of waiting ones.
+ */
+public class FifoPoolEngine<T extends PoolEngine.Entry> implements PoolEngine<T> {
+
+    private static final Logger LOG = Logger.getLogger(FifoPoolEngine.class.getName());
+
+    private final Listener listener;
+    private final CopyOnWriteArrayList<T> entries = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<T> idle = new ArrayDeque<>();
+    private final ArrayDeque<Waiter<T>> waiters = new ArrayDeque<>();
+    private volatile boolean closed;
+
+    public FifoPoolEngine(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public T borrow(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        Waiter<T> waiter;
+        int waiting;
+        lock.lock();
+        try {
+            T entry = pollIdle();
+            if (entry != null) {
+                return entry;
+            }
+            waiter = Waiter.parked(Thread.currentThread());
+            waiters.addLast(waiter);
+            waiting = waiters.size();
+        } finally {
+            lock.unlock();
+        }
+
+        listener.addItem(waiting);
+
+        try {
+            return waiter.await(timeUnit.toNanos(timeout), this);
+        } finally {
+            if (waiter.isCancelled()) {
+                removeWaiter(waiter);
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<T> borrowAsync(long timeout, TimeUnit timeUnit, ScheduledExecutorService scheduler) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Waiter<T> waiter;
+        int waiting;
+        lock.lock();
+        try {
+            T entry = pollIdle();
+            if (entry != null) {
+                future.complete(entry);
+                return future;
+            }
+            waiter = Waiter.async(future);
+            waiters.addLast(waiter);
+            waiting = waiters.size();
+        } finally {
+            lock.unlock();
+        }
+
+        listener.addItem(waiting);
+
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (waiter.cancel()) {
+                future.complete(null);
+            }
+        }, timeout, timeUnit);
+        future.whenComplete((entry, error) -> {
+            timer.cancel(false);
+            // completed by the timer or cancelled by the caller
+            if (waiter.cancel() || waiter.isCancelled()) {
+                removeWaiter(waiter);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private T pollIdle() {
+        if (waiters.isEmpty()) {
+            T entry = idle.pollFirst();
+            if (entry != null) {
+                entry.setState(STATE_IN_USE);
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void removeWaiter(Waiter<T> waiter) {
+        lock.lock();
+        try {
+            waiters.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void requite(T entry) {
+        if (entry.getState() != STATE_REMOVED) {
+            release(entry);
+        }
+    }
+
+    @Override
+    public void add(T entry) {
+        if (closed) {
+            LOG.info("FifoPoolEngine has been closed, ignoring add()");
+            throw new IllegalStateException("FifoPoolEngine has been closed, ignoring add()");
+        }
+        entries.add(entry);
+        release(entry);
+    }
+
+    /**
+     * Hand the entry to the oldest waiter, or put it at the tail of the idle queue.
+     */
+    private void release(T entry) {
+        for (;;) {
+            Waiter<T> waiter;
+            lock.lock();
+            try {
+                waiter = waiters.pollFirst();
+                if (waiter == null) {
+                    entry.setState(STATE_NOT_IN_USE);
+                    idle.addLast(entry);
+                    return;
+                }
+                entry.setState(STATE_IN_USE);
+            } finally {
+                lock.unlock();
+            }
+            // hand over outside of the lock, completing a future runs the caller's callbacks
+            if (waiter.offer(entry)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(T entry) {
+        if (!entry.compareAndSet(STATE_IN_USE, STATE_REMOVED) && !entry.compareAndSet(STATE_RESERVED, STATE_REMOVED) && !closed) {
+            LOG.warning("Attempt to remove an object from the pool that was not borrowed or reserved: " + entry);
+            return false;
+        }
+        return entries.remove(entry);
+    }
+
+    @Override
+    public boolean reserve(T entry) {
+        lock.lock();
+        try {
+            if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_RESERVED)) {
+                idle.remove(entry);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void unreserve(T entry) {
+        if (entry.getState() == STATE_RESERVED) {
+            release(entry);
+        } else {
+            LOG.warning("Attempt to relinquish an object to the pool that was not reserved: " + entry);
+        }
+    }
+
+    @Override
+    public List<T> values(int state) {
+        return entries.stream().filter(e -> e.getState() == state).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<T> values() {
+        return new ArrayList<>(entries);
+    }
+
+    @Override
+    public int getCount(int state) {
+        int count = 0;
+        for (T entry : entries) {
+            if (entry.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getWaitingThreadCount() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+}
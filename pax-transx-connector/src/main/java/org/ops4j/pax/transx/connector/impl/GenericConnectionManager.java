@@ -18,46 +18,75 @@ package org.ops4j.pax.transx.connector.impl;
 
 import com.zaxxer.hikari.util.ConcurrentBag;
 import com.zaxxer.hikari.util.UtilityElf;
+import org.ops4j.pax.transx.connector.AsyncConnectionManager;
+import org.ops4j.pax.transx.connector.PoolEngine;
+import org.ops4j.pax.transx.connector.PoolEngines;
+import org.ops4j.pax.transx.connector.PoolMXBean;
+import org.ops4j.pax.transx.connector.PoolRuntime;
 import org.ops4j.pax.transx.connector.SubjectSource;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTracker;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTrackerFactory;
+import org.ops4j.pax.transx.connector.metrics.PoolStats;
 import org.ops4j.pax.transx.tm.NamedResource;
 import org.ops4j.pax.transx.tm.Transaction;
 import org.ops4j.pax.transx.tm.TransactionManager;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.resource.ResourceException;
 import javax.resource.spi.ConnectionEvent;
 import javax.resource.spi.ConnectionEventListener;
-import javax.resource.spi.ConnectionManager;
 import javax.resource.spi.ConnectionRequestInfo;
 import javax.resource.spi.ManagedConnection;
 import javax.resource.spi.ManagedConnectionFactory;
 import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
 import javax.resource.spi.ValidatingManagedConnectionFactory;
 import javax.security.auth.Subject;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static com.zaxxer.hikari.util.ClockSource.*;
-import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.STATE_IN_USE;
-import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.STATE_NOT_IN_USE;
+import static org.ops4j.pax.transx.connector.PoolEngine.STATE_IN_USE;
+import static org.ops4j.pax.transx.connector.PoolEngine.STATE_NOT_IN_USE;
 import static com.zaxxer.hikari.util.UtilityElf.createThreadPoolExecutor;
 import static com.zaxxer.hikari.util.UtilityElf.quietlySleep;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
-public class GenericConnectionManager implements ConnectionManager, AutoCloseable {
+public class GenericConnectionManager implements AsyncConnectionManager, PoolMXBean, AutoCloseable {
 
     private static final Logger LOG = Logger.getLogger(GenericConnectionManager.class.getName());
 
@@ -67,6 +96,31 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
     private static final Comparator<ManagedConnectionInfo> LASTACCESS_REVERSE_COMPARABLE =
             (entryOne, entryTwo) -> Long.compare(entryTwo.lastAccessed, entryOne.lastAccessed);
 
+    /**
+     * Weight of the latest sample in the moving average of the demand, for adaptive sizing.
+     */
+    private static final double USAGE_ALPHA = 0.3;
+
+    /**
+     * Spare capacity kept above the average demand during quiet periods, for adaptive sizing.
+     */
+    private static final double USAGE_HEADROOM = 1.2;
+
+    /**
+     * Resolution and size of the timing wheel for the lifetime, idle and leak timers.
+     */
+    private static final long TIMER_TICK = 100L;
+    private static final int TIMER_WHEEL_SIZE = 512;
+
+    private static final int POOL_NORMAL = 0;
+    private static final int POOL_SUSPENDED = 1;
+    private static final int POOL_RESUMING = 2;
+
+    /**
+     * Users count of a sub-pool which has been evicted.
+     */
+    private static final int SUB_POOL_RETIRED = -1;
+
 
     private final TransactionManager transactionManager;
     private final SubjectSource subjectSource;
@@ -74,27 +128,82 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
     private final ManagedConnectionFactory managedConnectionFactory;
     private final String name;
     private final TransactionSupportLevel transactionSupportLevel;
+    private final PoolEngine.Factory poolEngineFactory;
+    private final Executor asyncExecutor;
+    private final ExecutorService ownAsyncExecutor;
+    private final boolean adaptiveSizing;
+    private final long adaptiveWaitThreshold;
+    private final int adaptiveWaitingThreshold;
+    private final PoolMetricsTrackerFactory metricsTrackerFactory;
+    private final long leakDetectionThreshold;
+    private final double leakDetectionSampleRate;
+    private final boolean leakReclaim;
+    private final LongAdder leakedConnections = new LongAdder();
+    private final AtomicInteger subPoolCounter = new AtomicInteger();
+    private final int maxTotalConnections;
+    private final int maxSubPools;
+    private final long subPoolIdleTimeout;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private volatile boolean starving;
+    private final PoolRuntime.Member runtimeMember = new PoolRuntime.Member() {
+        @Override
+        public void connectionReleased() {
+            offerConnectionSlot();
+        }
+
+        @Override
+        public boolean evictIdleConnection() {
+            return pools.values()
+                    .stream()
+                    .filter(pool -> pool.getIdleConnections() > minIdle)
+                    .max(Comparator.comparingInt(Pool::getIdleConnections))
+                    .filter(pool -> pool.evictIdleConnection("(connection reclaimed for another pool)"))
+                    .isPresent();
+        }
+    };
 
     private volatile boolean destroyed = false;
 
     private String poolName;
-    private int maxPoolSize;
-    private int minIdle;
+    // sizes and timeouts can be changed at runtime through the MBean
+    private volatile int maxPoolSize;
+    private volatile int minIdle;
     private long aliveBypassWindow;
+    private final long keepaliveTime;
     private long houseKeepingPeriod;
-    private long connectionTimeout;
-    private long idleTimeout;
+    private volatile long connectionTimeout;
+    private volatile long idleTimeout;
     private long maxLifetime;
 
-    private final ThreadPoolExecutor addConnectionExecutor;
-    private final ThreadPoolExecutor closeConnectionExecutor;
+    private final PoolRuntime poolRuntime;
+    private final ExecutorService addConnectionExecutor;
+    private final ExecutorService closeConnectionExecutor;
+    private final ExecutorService keepaliveExecutor;
+    private final ThreadPoolExecutor resetExecutor;
+    private final ConcurrentLinkedQueue<ManagedConnectionInfo> dirtyConnections = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger resetWorkers = new AtomicInteger();
+    private final ThreadFactory warmUpThreadFactory;
+    private final Executor warmUpExecutor;
+    private final int warmUpConcurrency;
+    private final CreationLimiter creationLimiter;
+    private final ConcurrentLinkedQueue<Waiter<Boolean>> suspendedWaiters = new ConcurrentLinkedQueue<>();
+    private volatile int poolState = POOL_NORMAL;
+    private int resumeGeneration;
+    private ObjectName objectName;
     private ScheduledExecutorService houseKeepingExecutorService;
 
     private ScheduledFuture<?> houseKeeperTask;
+    private final TimingWheel timingWheel = new TimingWheel(TIMER_TICK, MILLISECONDS, TIMER_WHEEL_SIZE);
+    private ScheduledFuture<?> timingWheelTask;
 
-    private final ConcurrentMap<Transaction, ManagedConnectionInfo> infos = new ConcurrentHashMap<>();
     private final ConcurrentMap<SubjectCRIKey, Pool> pools = new ConcurrentHashMap<>();
+    // the sub-pool of the last request, found without building a key as most requests use the same credentials
+    private volatile Pool lastPool;
 
+    /**
+     * Create a connection manager with the {@link org.ops4j.pax.transx.connector.ConnectionManagerBuilder}
+     * defaults for the options which are not given.
+     */
     public GenericConnectionManager(
             TransactionManager transactionManager,
             TransactionSupportLevel transactionSupportLevel,
@@ -110,6 +219,52 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
             long maxLifetime,
             long aliveBypassWindow,
             long houseKeepingPeriod) {
+        this(transactionManager, transactionSupportLevel, subjectSource, classLoader, managedConnectionFactory,
+                name, poolName, minIdle, maxPoolSize, connectionTimeout, idleTimeout, maxLifetime,
+                aliveBypassWindow, houseKeepingPeriod,
+                PoolEngines.BAG, false, null,
+                false, 50L, 1, 4, 0, 4,
+                (p, s, stats) -> PoolMetricsTracker.NOOP, false,
+                0L, 0.0, false,
+                0L, 0, 0, 0L, null,
+                false);
+    }
+
+    public GenericConnectionManager(
+            TransactionManager transactionManager,
+            TransactionSupportLevel transactionSupportLevel,
+            SubjectSource subjectSource,
+            ClassLoader classLoader,
+            ManagedConnectionFactory managedConnectionFactory,
+            String name,
+            String poolName,
+            int minIdle,
+            int maxPoolSize,
+            long connectionTimeout,
+            long idleTimeout,
+            long maxLifetime,
+            long aliveBypassWindow,
+            long houseKeepingPeriod,
+            PoolEngine.Factory poolEngineFactory,
+            boolean virtualThreads,
+            Executor asyncExecutor,
+            boolean adaptiveSizing,
+            long adaptiveWaitThreshold,
+            int adaptiveWaitingThreshold,
+            int warmUpConcurrency,
+            int creationRate,
+            int creationBurst,
+            PoolMetricsTrackerFactory metricsTrackerFactory,
+            boolean registerMBean,
+            long leakDetectionThreshold,
+            double leakDetectionSampleRate,
+            boolean leakReclaim,
+            long keepaliveTime,
+            int maxTotalConnections,
+            int maxSubPools,
+            long subPoolIdleTimeout,
+            PoolRuntime poolRuntime,
+            boolean deferredReset) {
 
         this.transactionManager = transactionManager;
         this.transactionSupportLevel = transactionSupportLevel;
@@ -125,24 +280,125 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
         this.maxLifetime = maxLifetime;
         this.aliveBypassWindow = aliveBypassWindow;
         this.houseKeepingPeriod = houseKeepingPeriod;
-
-        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new UtilityElf.DefaultThreadFactory(poolName + " housekeeper", true), new ThreadPoolExecutor.DiscardPolicy());
-        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
-        executor.setRemoveOnCancelPolicy(true);
-        this.houseKeepingExecutorService = executor;
-
-        this.addConnectionExecutor = createThreadPoolExecutor(this.maxPoolSize, poolName + " connection adder", null, new ThreadPoolExecutor.DiscardPolicy());
-        this.closeConnectionExecutor = createThreadPoolExecutor(this.maxPoolSize, poolName + " connection closer", null, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.poolEngineFactory = poolEngineFactory;
+        this.adaptiveSizing = adaptiveSizing;
+        this.adaptiveWaitThreshold = adaptiveWaitThreshold;
+        this.adaptiveWaitingThreshold = adaptiveWaitingThreshold;
+        this.warmUpConcurrency = warmUpConcurrency;
+        this.metricsTrackerFactory = metricsTrackerFactory;
+        this.leakDetectionThreshold = leakDetectionThreshold;
+        this.leakDetectionSampleRate = leakDetectionSampleRate;
+        this.leakReclaim = leakReclaim;
+        this.keepaliveTime = keepaliveTime;
+        this.maxTotalConnections = maxTotalConnections;
+        this.maxSubPools = maxSubPools;
+        this.subPoolIdleTimeout = subPoolIdleTimeout;
+        this.poolRuntime = poolRuntime;
+        this.creationLimiter = new CreationLimiter(creationRate, creationBurst, Math.min(SECONDS.toMillis(10), connectionTimeout));
+
+        if (poolRuntime != null) {
+            this.houseKeepingExecutorService = poolRuntime.getScheduler();
+            this.addConnectionExecutor = poolRuntime.getCreationExecutor();
+            this.closeConnectionExecutor = poolRuntime.getCloseExecutor();
+            poolRuntime.register(runtimeMember);
+            this.minIdle = poolRuntime.reserveMinIdle(runtimeMember, minIdle);
+            if (this.minIdle < minIdle) {
+                LOG.warning(() -> poolName + " - minIdle does not fit in the maxConnections of " + poolRuntime.getName()
+                        + " left by the other pools, setting to " + this.minIdle + ".");
+            }
+        } else {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new UtilityElf.DefaultThreadFactory(poolName + " housekeeper", true), new ThreadPoolExecutor.DiscardPolicy());
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            executor.setRemoveOnCancelPolicy(true);
+            this.houseKeepingExecutorService = executor;
+
+            // creating and closing connections is mostly waiting on the network, which virtual threads do for free
+            this.addConnectionExecutor = createThreadPoolExecutor(this.maxPoolSize, poolName + " connection adder",
+                    virtualThreads ? VirtualThreads.factory(poolName + " connection adder") : null, new ThreadPoolExecutor.DiscardPolicy());
+            this.closeConnectionExecutor = createThreadPoolExecutor(this.maxPoolSize, poolName + " connection closer",
+                    virtualThreads ? VirtualThreads.factory(poolName + " connection closer") : null, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        if (asyncExecutor != null) {
+            this.asyncExecutor = asyncExecutor;
+            this.ownAsyncExecutor = null;
+        } else {
+            // completing an allocation holds a connection, so there is no point in more threads than connections
+            ThreadPoolExecutor ownExecutor = new ThreadPoolExecutor(this.maxPoolSize, this.maxPoolSize, 5L, SECONDS, new LinkedBlockingQueue<>(),
+                    virtualThreads ? VirtualThreads.factory(poolName + " async") : new UtilityElf.DefaultThreadFactory(poolName + " async", true));
+            ownExecutor.allowCoreThreadTimeOut(true);
+            this.asyncExecutor = ownExecutor;
+            this.ownAsyncExecutor = ownExecutor;
+        }
+        this.warmUpThreadFactory = virtualThreads ? VirtualThreads.factory(poolName + " warm-up")
+                : new UtilityElf.DefaultThreadFactory(poolName + " warm-up", true);
+        this.warmUpExecutor = poolRuntime != null ? poolRuntime.getWarmUpExecutor()
+                : command -> warmUpThreadFactory.newThread(command).start();
+        if (keepaliveTime > 0L && poolRuntime != null) {
+            this.keepaliveExecutor = poolRuntime.getKeepaliveExecutor();
+        } else if (keepaliveTime > 0L) {
+            // one batch at a time, the factory validates the connections of a batch in parallel
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 5L, SECONDS, new LinkedBlockingQueue<>(),
+                    virtualThreads ? VirtualThreads.factory(poolName + " keepalive") : new UtilityElf.DefaultThreadFactory(poolName + " keepalive", true),
+                    new ThreadPoolExecutor.DiscardPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            this.keepaliveExecutor = executor;
+        } else {
+            this.keepaliveExecutor = null;
+        }
+        if (deferredReset) {
+            // cleaning up is a round-trip to the database for most connections, so they are reset in parallel,
+            // on threads of their own so that a burst of resets does not hold back closing connections
+            final int workers = Math.min(this.maxPoolSize, Math.max(2, Runtime.getRuntime().availableProcessors()));
+            this.resetExecutor = new ThreadPoolExecutor(workers, workers, 5L, SECONDS, new LinkedBlockingQueue<>(),
+                    virtualThreads ? VirtualThreads.factory(poolName + " connection resetter") : new UtilityElf.DefaultThreadFactory(poolName + " connection resetter", true),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            this.resetExecutor.allowCoreThreadTimeOut(true);
+        } else {
+            this.resetExecutor = null;
+        }
 
         this.houseKeeperTask = this.houseKeepingExecutorService.scheduleWithFixedDelay(this::houseKeep, 100L, this.houseKeepingPeriod, MILLISECONDS);
+        this.timingWheelTask = this.houseKeepingExecutorService.scheduleAtFixedRate(timingWheel::advance, TIMER_TICK, TIMER_TICK, MILLISECONDS);
 
         if (transactionManager != null && name != null) {
             transactionManager.registerResource(new RecoverableResourceFactoryImpl(managedConnectionFactory, name));
         }
+        if (registerMBean) {
+            registerMBean();
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("org.ops4j.pax.transx:type=Pool,name=" + ObjectName.quote(poolName));
+            mBeanServer.registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, poolName + " - Failed to register management bean", e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, poolName + " - Failed to unregister management bean", e);
+            }
+            objectName = null;
+        }
     }
 
     private void houseKeep() {
         pools.values().forEach(Pool::houseKeep);
+        if (subPoolIdleTimeout > 0L) {
+            final long now = currentTime();
+            pools.values()
+                    .stream()
+                    .filter(pool -> elapsedMillis(pool.lastUsed, now) > subPoolIdleTimeout)
+                    .forEach(Pool::retire);
+        }
     }
 
     /**
@@ -161,45 +417,186 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
         return mci.getManagedConnection().getConnection(subject, connectionRequestInfo);
     }
 
-    private ManagedConnectionInfo getMci(Subject subject, ConnectionRequestInfo connectionRequestInfo) throws ResourceException {
-        ClassLoader prevClassLoader = null;
+    /**
+     * Switch the context class loader of the current thread to the one of the connection manager.
+     *
+     * @return the class loader to restore with {@link #restoreClassLoader(ClassLoader)}, or null
+     */
+    private ClassLoader switchClassLoader() {
         if (classLoader != null) {
             ClassLoader cl = Thread.currentThread().getContextClassLoader();
             if (cl != classLoader) {
-                prevClassLoader = cl;
                 Thread.currentThread().setContextClassLoader(classLoader);
+                return cl;
             }
         }
+        return null;
+    }
+
+    private static void restoreClassLoader(ClassLoader prevClassLoader) {
+        if (prevClassLoader != null) {
+            Thread.currentThread().setContextClassLoader(prevClassLoader);
+        }
+    }
+
+    private ManagedConnectionInfo getMci(Subject subject, ConnectionRequestInfo connectionRequestInfo) throws ResourceException {
+        ClassLoader prevClassLoader = switchClassLoader();
         try {
-            Transaction transaction = transactionSupportLevel != TransactionSupportLevel.NoTransaction
-                                        && transactionManager != null ? transactionManager.getTransaction() : null;
-            if (transaction != null && transaction.isActive()) {
-                ManagedConnectionInfo existing = infos.get(transaction);
+            Transaction transaction = getActiveTransaction();
+            if (transaction != null) {
+                TransactionConnections connections = getTransactionConnections(transaction);
+                ManagedConnectionInfo existing = connections.get(subject, connectionRequestInfo);
                 if (existing != null) {
                     return existing;
                 }
-                ManagedConnectionInfo mci = getMciFromPool(subject, connectionRequestInfo);
-                infos.put(transaction, mci);
-                transaction.synchronization(null, status -> {
-                    infos.remove(transaction);
-                    mci.requite();
-                });
-                mci.enlist(transaction);
-                return mci;
+                return connections.enlist(getMciFromPool(subject, connectionRequestInfo), transaction);
             } else {
                 return getMciFromPool(subject, connectionRequestInfo);
             }
         } finally {
-            if (prevClassLoader != null) {
-                Thread.currentThread().setContextClassLoader(prevClassLoader);
+            restoreClassLoader(prevClassLoader);
+        }
+    }
+
+    private Transaction getActiveTransaction() {
+        Transaction transaction = transactionSupportLevel != TransactionSupportLevel.NoTransaction
+                                    && transactionManager != null ? transactionManager.getTransaction() : null;
+        return transaction != null && transaction.isActive() ? transaction : null;
+    }
+
+    /**
+     * The connections enlisted by this manager are cached on the transaction itself.
+     */
+    private TransactionConnections getTransactionConnections(Transaction transaction) {
+        TransactionConnections connections = (TransactionConnections) transaction.getResource(this);
+        if (connections == null) {
+            TransactionConnections newConnections = new TransactionConnections();
+            transaction.synchronization(null, status -> {
+                transaction.putResource(this, null);
+                newConnections.requite();
+            });
+            transaction.putResource(this, newConnections);
+            connections = newConnections;
+        }
+        return connections;
+    }
+
+    /**
+     * Get the sub-pool for the given subject and request info, which must be released
+     * with {@link Pool#exit()} once the request is over.
+     */
+    private Pool getPool(Subject subject, ConnectionRequestInfo connectionRequestInfo) {
+        Pool last = lastPool;
+        if (last != null && last.key.matches(subject, connectionRequestInfo) && last.enter()) {
+            return last;
+        }
+        SubjectCRIKey key = new SubjectCRIKey(subject, connectionRequestInfo);
+        for (;;) {
+            Pool pool = pools.computeIfAbsent(key, Pool::new);
+            if (pool.enter()) {
+                if (maxSubPools > 0 && pools.size() > maxSubPools) {
+                    evictSubPools(pool);
+                }
+                lastPool = pool;
+                return pool;
+            }
+            // evicted in the meantime, it is about to be removed from the map
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Evict the least recently used sub-pools which are not in use, down to maxSubPools.
+     */
+    private void evictSubPools(Pool keep) {
+        final int excess = pools.size() - maxSubPools;
+        pools.values()
+                .stream()
+                .filter(pool -> pool != keep)
+                .sorted(Comparator.comparingLong(pool -> pool.lastUsed))
+                .filter(Pool::retire)
+                .limit(excess)
+                .forEach(pool -> LOG.fine(() -> poolName + " - More than " + maxSubPools + " sub-pools, evicted sub-pool " + pool.name));
+    }
+
+    /**
+     * The number of connections a sub-pool is entitled to when the total number of connections is capped.
+     */
+    private int fairShare() {
+        return Math.max(1, maxTotalConnections / Math.max(1, pools.size()));
+    }
+
+    /**
+     * Take one of the connections allowed across all the sub-pools.  When none is left, a sub-pool
+     * below its fair share has the least recently used idle connection of the largest sub-pool closed,
+     * or the next one given back to it if they are all in use.
+     */
+    private boolean acquireConnectionSlot(Pool pool) {
+        if (maxTotalConnections > 0 && !acquireTotalConnection(pool)) {
+            return false;
+        }
+        if (poolRuntime != null && !poolRuntime.acquireConnection(runtimeMember)) {
+            // the limit of the runtime is reached, a slot will be offered when another manager closes a connection
+            if (maxTotalConnections > 0) {
+                totalConnections.decrementAndGet();
             }
+            return false;
+        }
+        return true;
+    }
+
+    private boolean acquireTotalConnection(Pool pool) {
+        for (;;) {
+            final int total = totalConnections.get();
+            if (total >= maxTotalConnections) {
+                break;
+            }
+            if (totalConnections.compareAndSet(total, total + 1)) {
+                return true;
+            }
+        }
+        final int fairShare = fairShare();
+        if (pool.getTotalConnections() < fairShare) {
+            starving = true;
+            pools.values()
+                    .stream()
+                    .filter(p -> p != pool && p.getTotalConnections() > fairShare)
+                    .max(Comparator.comparingInt(Pool::getTotalConnections))
+                    .ifPresent(p -> p.evictIdleConnection("(connection reclaimed for another sub-pool)"));
+        }
+        return false;
+    }
+
+    private void releaseConnectionSlot() {
+        if (maxTotalConnections > 0) {
+            totalConnections.decrementAndGet();
+        }
+        if (poolRuntime != null) {
+            poolRuntime.releaseConnection();
+        }
+    }
+
+    /**
+     * Give the connection slot freed by a closed connection to the smallest sub-pool with waiting threads.
+     */
+    private void offerConnectionSlot() {
+        if ((maxTotalConnections > 0 || poolRuntime != null && poolRuntime.getMaxConnections() > 0) && !destroyed) {
+            starving = false;
+            pools.values()
+                    .stream()
+                    .filter(pool -> pool.getPendingThreads() > 0)
+                    .min(Comparator.comparingInt(Pool::getTotalConnections))
+                    .ifPresent(pool -> pool.addNewConnection(1));
         }
     }
 
     private ManagedConnectionInfo getMciFromPool(Subject subject, ConnectionRequestInfo connectionRequestInfo) throws ResourceException {
-        SubjectCRIKey key = new SubjectCRIKey(subject, connectionRequestInfo);
-        Pool pool = pools.computeIfAbsent(key, Pool::new);
-        return getMciFromPool(pool, connectionTimeout);
+        Pool pool = getPool(subject, connectionRequestInfo);
+        try {
+            return getMciFromPool(pool, connectionTimeout);
+        } finally {
+            pool.exit();
+        }
     }
 
     private ManagedConnectionInfo getMciFromPool(Pool pool, long connectionTimeout) throws ResourceException {
@@ -208,6 +605,13 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
         long timeout = connectionTimeout;
         ManagedConnectionInfo mci = null;
         try {
+            if (poolState != POOL_NORMAL) {
+                if (!awaitResumed(timeout)) {
+                    pool.metricsTracker.recordConnectionTimeout();
+                    throw new ResourceException(poolName + " - Connection is not available, pool is suspended, request timed out after " + elapsedMillis(startTime) + "ms.");
+                }
+                timeout = connectionTimeout - elapsedMillis(startTime);
+            }
             do {
                 mci = pool.borrow(timeout, MILLISECONDS);
                 if (mci == null) {
@@ -215,35 +619,482 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
                 }
 
                 final long now = currentTime();
-                if (mci.isMarkedEvicted() || (elapsedMillis(mci.lastAccessed, now) > aliveBypassWindow && !isValid(mci))) {
+                if (mci.isMarkedEvicted() || (needsValidation(mci, now) && !isValid(mci))) {
                     pool.closeConnection(mci, "(connection is evicted or dead)"); // Throw away the dead connection (passed max age or failed alive test)
                     timeout = connectionTimeout - elapsedMillis(startTime);
                 }
                 else {
-                    mci.lastBorrowed = now;
+                    pool.borrowed(mci, startTime, now);
                     return mci;
                 }
             } while (timeout > 0L);
         }
         catch (InterruptedException e) {
             if (mci != null) {
-                mci.lastAccessed = startTime;
                 pool.requite(mci);
             }
             Thread.currentThread().interrupt();
             throw new ResourceException(poolName + " - Interrupted during connection acquisition", e);
         }
 
+        pool.metricsTracker.recordConnectionTimeout();
         throw new ResourceException(poolName + " - Connection is not available, request timed out after " + elapsedMillis(startTime) + "ms.");
     }
 
+    /**
+     * Park the calling thread until the pool is resumed.
+     *
+     * @return false if the pool has not been resumed in time
+     */
+    private boolean awaitResumed(long timeout) throws InterruptedException {
+        final Waiter<Boolean> waiter = Waiter.parked(Thread.currentThread());
+        suspendedWaiters.add(waiter);
+        if (poolState == POOL_NORMAL) {
+            // resumed in the meantime
+            releaseSuspendedWaiters();
+        }
+        try {
+            return waiter.await(MILLISECONDS.toNanos(timeout), this) != null;
+        } finally {
+            if (waiter.isCancelled()) {
+                suspendedWaiters.remove(waiter);
+            }
+        }
+    }
+
+    private void releaseSuspendedWaiters() {
+        Waiter<Boolean> waiter;
+        while ((waiter = suspendedWaiters.poll()) != null) {
+            waiter.offer(Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public CompletionStage<Object> allocateConnectionAsync(ManagedConnectionFactory managedConnectionFactory,
+                                                           ConnectionRequestInfo connectionRequestInfo) {
+        assert managedConnectionFactory == this.managedConnectionFactory;
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        try {
+            // the subject and transaction are bound to the calling thread, so grab them now
+            Subject subject = subjectSource != null ? subjectSource.getSubject() : null;
+            Transaction transaction = getActiveTransaction();
+            TransactionConnections connections = transaction != null ? getTransactionConnections(transaction) : null;
+            ManagedConnectionInfo existing = connections != null ? connections.get(subject, connectionRequestInfo) : null;
+            if (existing != null) {
+                result.complete(existing.getManagedConnection().getConnection(subject, connectionRequestInfo));
+            } else {
+                Pool pool = getPool(subject, connectionRequestInfo);
+                result.whenComplete((c, t) -> pool.exit());
+                AsyncRequest request = new AsyncRequest(pool, subject, connectionRequestInfo, transaction, connections, result);
+                request.borrow();
+            }
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        }
+        return result;
+    }
+
+    /**
+     * An asynchronous allocation.  The connection is borrowed from the pool without blocking,
+     * and once handed over, validated and associated with the transaction on the async executor,
+     * as both may need to talk to the resource.
+     */
+    final class AsyncRequest {
+
+        final Pool pool;
+        final Subject subject;
+        final ConnectionRequestInfo connectionRequestInfo;
+        final Transaction transaction;
+        final TransactionConnections connections;
+        final CompletableFuture<Object> result;
+        final long startTime = currentTime();
+
+        AsyncRequest(Pool pool, Subject subject, ConnectionRequestInfo connectionRequestInfo,
+                     Transaction transaction, TransactionConnections connections, CompletableFuture<Object> result) {
+            this.pool = pool;
+            this.subject = subject;
+            this.connectionRequestInfo = connectionRequestInfo;
+            this.transaction = transaction;
+            this.connections = connections;
+            this.result = result;
+        }
+
+        void borrow() {
+            if (poolState != POOL_NORMAL) {
+                awaitResumed();
+                return;
+            }
+            long timeout = connectionTimeout - elapsedMillis(startTime);
+            CompletableFuture<ManagedConnectionInfo> borrow = pool.borrowAsync(timeout, MILLISECONDS);
+            result.whenComplete((c, t) -> {
+                if (result.isCancelled()) {
+                    borrow.cancel(false);
+                }
+            });
+            borrow.whenCompleteAsync(this::borrowed, asyncExecutor);
+        }
+
+        private void awaitResumed() {
+            final CompletableFuture<Boolean> resumed = new CompletableFuture<>();
+            final Waiter<Boolean> waiter = Waiter.async(resumed);
+            final ScheduledFuture<?> timer = houseKeepingExecutorService.schedule(() -> {
+                if (waiter.cancel()) {
+                    suspendedWaiters.remove(waiter);
+                    pool.metricsTracker.recordConnectionTimeout();
+                    result.completeExceptionally(new ResourceException(poolName + " - Connection is not available, pool is suspended, request timed out after " + elapsedMillis(startTime) + "ms."));
+                }
+            }, connectionTimeout - elapsedMillis(startTime), MILLISECONDS);
+            result.whenComplete((c, t) -> {
+                if (result.isCancelled() && waiter.cancel()) {
+                    suspendedWaiters.remove(waiter);
+                    timer.cancel(false);
+                }
+            });
+            resumed.thenRunAsync(() -> {
+                timer.cancel(false);
+                borrow();
+            }, asyncExecutor);
+            suspendedWaiters.add(waiter);
+            if (poolState == POOL_NORMAL) {
+                releaseSuspendedWaiters();
+            }
+        }
+
+        private void borrowed(ManagedConnectionInfo mci, Throwable error) {
+            // the threads of the async executor may have any context class loader
+            ClassLoader prevClassLoader = switchClassLoader();
+            try {
+                complete(mci, error);
+            } finally {
+                restoreClassLoader(prevClassLoader);
+            }
+        }
+
+        private void complete(ManagedConnectionInfo mci, Throwable error) {
+            if (error != null) {
+                if (!result.isDone()) {
+                    result.completeExceptionally(new ResourceException(poolName + " - Error during connection acquisition", error));
+                }
+                return;
+            }
+            if (mci == null) {
+                pool.metricsTracker.recordConnectionTimeout();
+                result.completeExceptionally(new ResourceException(poolName + " - Connection is not available, request timed out after " + elapsedMillis(startTime) + "ms."));
+                return;
+            }
+            if (result.isDone()) {
+                // cancelled while the connection was handed over
+                pool.requite(mci);
+                return;
+            }
+            final long now = currentTime();
+            if (mci.isMarkedEvicted() || (needsValidation(mci, now) && !isValid(mci))) {
+                pool.closeConnection(mci, "(connection is evicted or dead)");
+                if (elapsedMillis(startTime) < connectionTimeout) {
+                    borrow();
+                } else {
+                    pool.metricsTracker.recordConnectionTimeout();
+                    result.completeExceptionally(new ResourceException(poolName + " - Connection is not available, request timed out after " + elapsedMillis(startTime) + "ms."));
+                }
+                return;
+            }
+            pool.borrowed(mci, startTime, now);
+            final ManagedConnectionInfo used;
+            try {
+                used = transaction != null ? connections.enlist(mci, transaction) : mci;
+            } catch (Throwable t) {
+                // the connection has been given back by the enlistment
+                result.completeExceptionally(t);
+                return;
+            }
+            try {
+                Object connection = used.getManagedConnection().getConnection(subject, connectionRequestInfo);
+                if (!result.complete(connection) && transaction == null) {
+                    // cancelled while getting the handle, enlisted ones go back at transaction completion
+                    used.requite();
+                }
+            } catch (Throwable t) {
+                if (transaction == null) {
+                    used.requite();
+                }
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * The number of physical connection creations which have been held back
+     * by the creation rate limit or the backoff after failures.
+     */
+    public long getThrottledCreationCount() {
+        return creationLimiter.getThrottledCount();
+    }
+
+    /**
+     * Open the minimum number of idle connections of the pool used for the given request info,
+     * creating up to warmUpConcurrency connections in parallel, and wait until they are
+     * all available or the timeout expires.
+     *
+     * @return true if the pool is ready
+     */
+    public boolean prefill(ConnectionRequestInfo connectionRequestInfo, Duration timeout) throws InterruptedException {
+        Subject subject = subjectSource != null ? subjectSource.getSubject() : null;
+        Pool pool = getPool(subject, connectionRequestInfo);
+        try {
+            return pool.prefill(timeout.toNanos());
+        } finally {
+            pool.exit();
+        }
+    }
+
+    @Override
+    public String getPoolName() {
+        return poolName;
+    }
+
+    @Override
+    public int getTotalConnections() {
+        return pools.values().stream().mapToInt(Pool::getTotalConnections).sum();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return pools.values().stream().mapToInt(Pool::getIdleConnections).sum();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return pools.values().stream().mapToInt(Pool::getActiveConnections).sum();
+    }
+
+    @Override
+    public int getThreadsAwaitingConnection() {
+        return pools.values().stream().mapToInt(Pool::getPendingThreads).sum();
+    }
+
+    @Override
+    public Map<String, PoolStats> getSubPools() {
+        return pools.values().stream().collect(Collectors.toMap(p -> p.name, p -> p));
+    }
+
+    @Override
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    @Override
+    public void setMaxPoolSize(int maxPoolSize) {
+        if (maxPoolSize < 1) {
+            throw new IllegalArgumentException("maxPoolSize must be at least 1");
+        }
+        if (maxPoolSize < minIdle) {
+            throw new IllegalArgumentException("maxPoolSize must not be less than minIdle (" + minIdle + ")");
+        }
+        LOG.info(() -> poolName + " - Changing maxPoolSize from " + this.maxPoolSize + " to " + maxPoolSize);
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    @Override
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    @Override
+    public void setMinIdle(int minIdle) {
+        if (minIdle < 0 || minIdle > maxPoolSize) {
+            throw new IllegalArgumentException("minIdle must be between 0 and maxPoolSize (" + maxPoolSize + ")");
+        }
+        if (poolRuntime != null && poolRuntime.reserveMinIdle(runtimeMember, minIdle) < minIdle) {
+            poolRuntime.reserveMinIdle(runtimeMember, this.minIdle);
+            throw new IllegalArgumentException("minIdle must fit in the maxConnections of " + poolRuntime.getName()
+                    + " left by the other pools");
+        }
+        LOG.info(() -> poolName + " - Changing minIdle from " + this.minIdle + " to " + minIdle);
+        this.minIdle = minIdle;
+    }
+
+    @Override
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    @Override
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout != 0 && idleTimeout < SECONDS.toMillis(10)) {
+            throw new IllegalArgumentException("idleTimeout must be 0 or at least 10000ms");
+        }
+        if (maxLifetime > 0 && idleTimeout + SECONDS.toMillis(1) > maxLifetime) {
+            throw new IllegalArgumentException("idleTimeout must be less than maxLifetime (" + maxLifetime + "ms)");
+        }
+        LOG.info(() -> poolName + " - Changing idleTimeout from " + this.idleTimeout + "ms to " + idleTimeout + "ms");
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    @Override
+    public void setConnectionTimeout(long connectionTimeout) {
+        if (connectionTimeout < 250) {
+            throw new IllegalArgumentException("connectionTimeout must be at least 250ms");
+        }
+        LOG.info(() -> poolName + " - Changing connectionTimeout from " + this.connectionTimeout + "ms to " + connectionTimeout + "ms");
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    @Override
+    public long getLeakedConnectionCount() {
+        return leakedConnections.sum();
+    }
+
+    @Override
+    public void softEvictConnections() {
+        pools.values().forEach(Pool::softEvictConnections);
+    }
+
+    @Override
+    public void suspendPool() {
+        suspend();
+    }
+
+    @Override
+    public void resumePool() {
+        resume();
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return poolState != POOL_NORMAL;
+    }
+
+    /**
+     * Suspend the pool, e.g. during a database failover.
+     *
+     * New callers wait for the pool to be resumed, up to the connection timeout, and no
+     * connection is created in the meantime.  Connections already borrowed are not affected,
+     * use {@link #softEvictConnections()} to drop the existing connections.
+     */
+    public synchronized void suspend() {
+        if (poolState != POOL_SUSPENDED) {
+            // also aborts a resume in progress
+            poolState = POOL_SUSPENDED;
+            LOG.info(() -> poolName + " - Pool suspended");
+        }
+    }
+
+    /**
+     * Resume a suspended pool.  The sub-pools are warmed up first in the background, waiting up
+     * to the connection timeout, then the waiting callers are let in in the order they arrived.
+     */
+    public void resume() {
+        final int generation;
+        synchronized (this) {
+            if (poolState != POOL_SUSPENDED) {
+                return;
+            }
+            // callers keep waiting while connections are created, so that they do not all race to create them
+            poolState = POOL_RESUMING;
+            generation = ++resumeGeneration;
+        }
+        // the caller, e.g. a management console, does not have to wait for the connections
+        warmUpThreadFactory.newThread(() -> warmUpAndResume(generation)).start();
+    }
+
+    private void warmUpAndResume(int generation) {
+        try {
+            final long deadline = System.nanoTime() + MILLISECONDS.toNanos(connectionTimeout);
+            for (Pool pool : pools.values()) {
+                if (poolState != POOL_RESUMING) {
+                    break;
+                }
+                pool.prefill(Math.max(0L, deadline - System.nanoTime()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            boolean resumed = false;
+            synchronized (this) {
+                // unless suspended again or closed in the meantime
+                if (poolState == POOL_RESUMING && generation == resumeGeneration) {
+                    poolState = POOL_NORMAL;
+                    resumed = true;
+                }
+            }
+            if (resumed) {
+                releaseSuspendedWaiters();
+                pools.values().forEach(Pool::fillPool);
+                LOG.info(() -> poolName + " - Pool resumed");
+            }
+        }
+    }
+
+    /**
+     * Queue a connection given back by the application to be cleaned up in the background.
+     * It stays in use until then, so that borrowers only get clean connections.
+     */
+    private void deferReset(ManagedConnectionInfo mci) {
+        dirtyConnections.add(mci);
+        if (startResetWorker()) {
+            resetExecutor.execute(this::resetDirtyConnections);
+        }
+    }
+
+    /**
+     * Count one more worker resetting connections, unless all the threads are already busy.
+     */
+    private boolean startResetWorker() {
+        for (;;) {
+            final int workers = resetWorkers.get();
+            if (workers >= resetExecutor.getMaximumPoolSize()) {
+                return false;
+            }
+            if (resetWorkers.compareAndSet(workers, workers + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Clean up and give back to their pools the queued connections, along with the other workers,
+     * including the ones queued while running.
+     */
+    private void resetDirtyConnections() {
+        do {
+            ManagedConnectionInfo mci;
+            while ((mci = dirtyConnections.poll()) != null) {
+                mci.reset();
+            }
+            resetWorkers.decrementAndGet();
+        } while (!dirtyConnections.isEmpty() && startResetWorker());
+    }
+
+    /**
+     * Whether a connection has to be validated before being handed out.  With keepalive, idle
+     * connections are validated in the background, so this only happens if the housekeeper is late.
+     */
+    private boolean needsValidation(ManagedConnectionInfo mci, long now) {
+        if (keepaliveTime > 0L) {
+            return elapsedMillis(mci.lastValidated(), now) > keepaliveTime + houseKeepingPeriod;
+        }
+        return elapsedMillis(mci.lastAccessed, now) > aliveBypassWindow;
+    }
+
     private boolean isValid(ManagedConnectionInfo mci) {
+        return !getInvalidConnections(Collections.singleton(mci.getManagedConnection())).contains(mci.getManagedConnection());
+    }
+
+    /**
+     * Ask the factory which of the given connections are broken, in a single call so that
+     * it can validate them all at once.
+     */
+    private Set<?> getInvalidConnections(Set<ManagedConnection> connections) {
         if (managedConnectionFactory instanceof ValidatingManagedConnectionFactory) {
             try {
-                Set s = ((ValidatingManagedConnectionFactory) managedConnectionFactory)
-                        .getInvalidConnections(Collections.singleton(mci.getManagedConnection()));
-                if (s != null && s.contains(mci.getManagedConnection())) {
-                    return false;
+                Set<?> s = ((ValidatingManagedConnectionFactory) managedConnectionFactory).getInvalidConnections(connections);
+                if (s != null) {
+                    return s;
                 }
             } catch (ResourceException e) {
                 // Ignore
@@ -251,22 +1102,44 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
         } else {
             LOG.warning("Connection validation configured, but the ManagedConnectionFactory does not implement the ValidatingManagedConnectionFactory interface");
         }
-        return true;
+        return Collections.emptySet();
     }
 
     public void close() throws Exception {
         destroyed = true;
+        unregisterMBean();
+        // let suspended callers fail now rather than at their timeout
+        poolState = POOL_NORMAL;
+        releaseSuspendedWaiters();
         if (houseKeeperTask != null) {
             houseKeeperTask.cancel(false);
             houseKeeperTask = null;
         }
+        if (timingWheelTask != null) {
+            timingWheelTask.cancel(false);
+            timingWheelTask = null;
+        }
 
         pools.values().forEach(Pool::softEvictConnections);
 
-        addConnectionExecutor.shutdown();
-        addConnectionExecutor.awaitTermination(5L, SECONDS);
+        if (poolRuntime == null) {
+            addConnectionExecutor.shutdown();
+            addConnectionExecutor.awaitTermination(5L, SECONDS);
+        }
+        if (keepaliveExecutor != null && poolRuntime == null) {
+            keepaliveExecutor.shutdownNow();
+        }
+        if (ownAsyncExecutor != null) {
+            ownAsyncExecutor.shutdown();
+        }
+        if (resetExecutor != null) {
+            resetExecutor.shutdown();
+            resetExecutor.awaitTermination(5L, SECONDS);
+        }
 
-        houseKeepingExecutorService.shutdownNow();
+        if (poolRuntime == null) {
+            houseKeepingExecutorService.shutdownNow();
+        }
 
         pools.values().forEach(Pool::close);
 
@@ -285,8 +1158,14 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
 //            assassinExecutor.awaitTermination(5L, SECONDS);
 //        }
 
-        closeConnectionExecutor.shutdown();
-        closeConnectionExecutor.awaitTermination(5L, SECONDS);
+        if (poolRuntime != null) {
+            // the shared threads close the remaining connections in the background
+            poolRuntime.unregister(runtimeMember);
+        } else {
+            closeConnectionExecutor.shutdown();
+            closeConnectionExecutor.awaitTermination(5L, SECONDS);
+        }
+        timingWheel.clear();
     }
 
     private void quietlyCloseConnection(final ManagedConnectionInfo connection, final String closureReason)
@@ -299,18 +1178,252 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
         }
     }
 
-    final class Pool {
+    /**
+     * Connections enlisted in a given transaction, one for each subject / request info.
+     * The common case is a single identity per transaction, so the first connection is
+     * kept in a field and lookups compare against the pool keys without allocating.
+     *
+     * Asynchronous allocations may complete on other threads than the one the transaction
+     * is bound to, so lookups are lock-free on copy-on-write fields and enlisting a new
+     * connection is serialized.
+     */
+    static final class TransactionConnections {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile ManagedConnectionInfo first;
+        private volatile ManagedConnectionInfo[] others;
+
+        ManagedConnectionInfo get(Subject subject, ConnectionRequestInfo connectionRequestInfo) {
+            if (first != null && first.pool.key.matches(subject, connectionRequestInfo)) {
+                return first;
+            }
+            if (others != null) {
+                for (ManagedConnectionInfo mci : others) {
+                    if (mci.pool.key.matches(subject, connectionRequestInfo)) {
+                        return mci;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Enlist a connection borrowed for this transaction, unless another one has been
+         * enlisted for the same identity in the meantime, in which case the borrowed
+         * connection goes back to the pool.
+         *
+         * @return the connection to use
+         */
+        ManagedConnectionInfo enlist(ManagedConnectionInfo mci, Transaction transaction) throws ResourceException {
+            lock.lock();
+            try {
+                ManagedConnectionInfo existing = get(mci.pool.key.getSubject(), mci.pool.key.getCri());
+                if (existing != null) {
+                    // not used yet, no need to clean it up
+                    mci.pool.requite(mci);
+                    return existing;
+                }
+                try {
+                    mci.enlist(transaction);
+                } catch (ResourceException e) {
+                    mci.requite();
+                    throw e;
+                }
+                add(mci);
+                return mci;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void add(ManagedConnectionInfo mci) {
+            if (first == null) {
+                first = mci;
+            } else if (others == null) {
+                others = new ManagedConnectionInfo[] { mci };
+            } else {
+                ManagedConnectionInfo[] copy = Arrays.copyOf(others, others.length + 1);
+                copy[copy.length - 1] = mci;
+                others = copy;
+            }
+        }
+
+        void requite() {
+            if (first != null) {
+                first.requite();
+            }
+            if (others != null) {
+                for (ManagedConnectionInfo mci : others) {
+                    mci.requite();
+                }
+            }
+        }
+    }
+
+    final class Pool implements PoolStats {
 
         private final SubjectCRIKey key;
-        private final ConcurrentBag<ManagedConnectionInfo> bag;
+        private final String name;
+        private final PoolEngine<ManagedConnectionInfo> engine;
+        private final PoolMetricsTracker metricsTracker;
+        private final AtomicInteger users = new AtomicInteger();
+        private volatile long lastUsed = currentTime();
         private volatile long previous = plusMillis(currentTime(), -houseKeepingPeriod);
 
+        // adaptive sizing
+        private final LongAdder slowBorrows = new LongAdder();
+        private volatile double usage;
+        private volatile int targetIdle = minIdle;
+
         Pool(SubjectCRIKey key) {
             this.key = key;
-            this.bag = new ConcurrentBag<>(this::addNewConnection);
+            this.engine = poolEngineFactory.create(this::addNewConnection);
+            this.name = Integer.toString(subPoolCounter.getAndIncrement());
+            this.metricsTracker = metricsTrackerFactory.create(poolName, name, this);
+        }
+
+        @Override
+        public int getTotalConnections() {
+            return engine.size();
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return engine.getCount(STATE_NOT_IN_USE);
+        }
+
+        @Override
+        public int getActiveConnections() {
+            return engine.getCount(STATE_IN_USE);
+        }
+
+        @Override
+        public int getPendingThreads() {
+            return engine.getWaitingThreadCount();
+        }
+
+        @Override
+        public int getMaxConnections() {
+            return maxPoolSize;
+        }
+
+        @Override
+        public int getMinConnections() {
+            return idleTarget();
+        }
+
+        /**
+         * Register a request using this sub-pool, so that it is not evicted meanwhile.
+         *
+         * @return false if the sub-pool has been evicted
+         */
+        boolean enter() {
+            for (;;) {
+                final int users = this.users.get();
+                if (users == SUB_POOL_RETIRED) {
+                    return false;
+                }
+                if (this.users.compareAndSet(users, users + 1)) {
+                    lastUsed = currentTime();
+                    return true;
+                }
+            }
         }
 
-        private Future<Boolean> addNewConnection(int waiting) {
+        void exit() {
+            users.decrementAndGet();
+        }
+
+        boolean isRetired() {
+            return users.get() == SUB_POOL_RETIRED;
+        }
+
+        /**
+         * Evict this sub-pool if no request is using it and all its connections are idle.
+         *
+         * @return true if the sub-pool has been evicted
+         */
+        boolean retire() {
+            if (!users.compareAndSet(0, SUB_POOL_RETIRED)) {
+                return false;
+            }
+            if (engine.getCount(STATE_NOT_IN_USE) != engine.size() || engine.getWaitingThreadCount() > 0) {
+                users.set(0);
+                return false;
+            }
+            pools.remove(key, this);
+            LOG.fine(() -> poolName + " - Retired sub-pool " + name);
+            softEvictConnections();
+            engine.close();
+            metricsTracker.close();
+            return true;
+        }
+
+        /**
+         * Close the least recently used idle connection, if any.
+         */
+        boolean evictIdleConnection(String reason) {
+            final Optional<ManagedConnectionInfo> idle = engine
+                    .values(STATE_NOT_IN_USE)
+                    .stream()
+                    .sorted(LASTACCESS_REVERSE_COMPARABLE.reversed())
+                    .filter(engine::reserve)
+                    .findFirst();
+            idle.ifPresent(mci -> closeConnection(mci, reason));
+            return idle.isPresent();
+        }
+
+        /**
+         * The number of idle connections to maintain.
+         */
+        int idleTarget() {
+            return adaptiveSizing ? targetIdle : minIdle;
+        }
+
+        void borrowed(ManagedConnectionInfo mci, long startTime, long now) {
+            mci.lastBorrowed = now;
+            timingWheel.cancel(mci.idleTimer);
+            if (leakDetectionThreshold > 0L) {
+                if (mci.leakTask == null) {
+                    mci.leakTask = new LeakTask(mci);
+                }
+                mci.leakTask.start();
+            }
+            metricsTracker.recordConnectionAcquiredNanos(elapsedNanos(startTime, now));
+            if (adaptiveSizing && elapsedMillis(startTime, now) > adaptiveWaitThreshold) {
+                slowBorrows.increment();
+            }
+        }
+
+        /**
+         * Update the idle target from the demand observed since the last run.
+         * Under pressure, i.e. slow borrows or too many waiting threads, the target grows by a quarter
+         * of the current demand.  Otherwise it follows a moving average of the demand with some headroom,
+         * so that connections are given back to the database during quiet periods.
+         */
+        void adapt() {
+            final int active = engine.getCount(STATE_IN_USE);
+            final int waiting = engine.getWaitingThreadCount();
+            final long slow = slowBorrows.sumThenReset();
+            final int demand = active + waiting;
+            final double usage = this.usage + USAGE_ALPHA * (demand - this.usage);
+            this.usage = usage;
+
+            int target;
+            if (slow > 0 || (waiting > 0 && waiting >= adaptiveWaitingThreshold)) {
+                target = targetIdle + Math.max(1, demand / 4);
+            } else {
+                target = (int) Math.ceil(usage * USAGE_HEADROOM) - active;
+            }
+            final int newTarget = Math.max(minIdle, Math.min(maxPoolSize, target));
+            if (newTarget != targetIdle) {
+                LOG.fine(() -> poolName + " - Adjusting idle target from " + targetIdle + " to " + newTarget +
+                                " (active=" + active + ", waiting=" + waiting + ", slow borrows=" + slow + ", average demand=" + String.format("%.1f", usage) + ")");
+                targetIdle = newTarget;
+            }
+        }
+
+        Future<Boolean> addNewConnection(int waiting) {
             return addConnectionExecutor.submit(() -> createConnection(null));
         }
 
@@ -318,7 +1431,10 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
          * Fill pool up from current idle connections (as they are perceived at the point of execution) to minIdle connections.
          */
         void fillPool() {
-            final int connectionsToAdd = Math.min(maxPoolSize - bag.size(), minIdle - bag.getCount(STATE_NOT_IN_USE));
+            if (isRetired()) {
+                return;
+            }
+            final int connectionsToAdd = Math.min(maxPoolSize - engine.size(), idleTarget() - engine.getCount(STATE_NOT_IN_USE));
             for (int i = 0; i < connectionsToAdd; i++) {
                 String afterPrefix = i < connectionsToAdd - 1 ? null : "After adding ";
                 addConnectionExecutor.submit(() -> createConnection(afterPrefix));
@@ -326,30 +1442,114 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
         }
 
         boolean createConnection(String afterPrefix) {
-            long sleepBackoff = 250L;
             while (!destroyed && shouldCreateAnotherConnection()) {
+                // creations are throttled and backed off globally, see CreationLimiter
+                final long delay = creationLimiter.acquire();
+                if (delay > 0L) {
+                    metricsTracker.recordConnectionCreationThrottled();
+                    quietlySleep(delay);
+                    continue;
+                }
+                if (!acquireConnectionSlot(this)) {
+                    // all the connections are taken, a slot will be offered when one is closed
+                    return false;
+                }
                 final ManagedConnectionInfo mci = tryCreateManagedConnection();
                 if (mci != null) {
-                    bag.add(mci);
+                    creationLimiter.success();
+                    if (!addConnection(mci)) {
+                        return false;
+                    }
                     LOG.fine(poolName + " - Added connection " + mci.getManagedConnection());
                     if (afterPrefix != null) {
                         logPoolState(afterPrefix);
                     }
                     return true;
                 }
-                // failed to get connection from db, sleep and retry
-                quietlySleep(sleepBackoff);
-                sleepBackoff = Math.min(SECONDS.toMillis(10), Math.min(connectionTimeout, (long) (sleepBackoff * 1.5)));
+                releaseConnectionSlot();
+                // failed to get connection from db, back off and retry
+                creationLimiter.failure();
             }
             // Pool is suspended or shutdown or at max size
             return false;
         }
 
+        boolean prefill(long timeout) throws InterruptedException {
+            final long deadline = System.nanoTime() + timeout;
+            final int target = Math.min(maxPoolSize, idleTarget());
+            final AtomicInteger missing = new AtomicInteger(target - engine.size());
+            final int workers = Math.min(warmUpConcurrency, missing.get());
+            if (workers <= 0) {
+                return true;
+            }
+            final CountDownLatch done = new CountDownLatch(workers);
+            for (int i = 0; i < workers; i++) {
+                warmUpExecutor.execute(() -> {
+                    try {
+                        while (!destroyed && poolState != POOL_SUSPENDED && missing.getAndDecrement() > 0) {
+                            final long delay = creationLimiter.acquire();
+                            if (delay == 0L) {
+                                if (!acquireConnectionSlot(this)) {
+                                    // the total number of connections is reached
+                                    break;
+                                }
+                                final ManagedConnectionInfo mci = tryCreateManagedConnection();
+                                if (mci != null) {
+                                    creationLimiter.success();
+                                    if (addConnection(mci)) {
+                                        continue;
+                                    }
+                                    break;
+                                }
+                                releaseConnectionSlot();
+                                creationLimiter.failure();
+                            }
+                            // give the connection back to the other workers and retry until the deadline
+                            missing.incrementAndGet();
+                            final long remaining = NANOSECONDS.toMillis(deadline - System.nanoTime());
+                            if (remaining <= 0L) {
+                                break;
+                            }
+                            if (delay > 0L) {
+                                metricsTracker.recordConnectionCreationThrottled();
+                                quietlySleep(Math.min(delay, remaining));
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await(deadline - System.nanoTime(), NANOSECONDS);
+            logPoolState("After warm-up ");
+            return engine.size() >= target;
+        }
+
+        /**
+         * Add a new connection to the pool, unless the sub-pool has been evicted meanwhile.
+         */
+        private boolean addConnection(ManagedConnectionInfo mci) {
+            mci.lastAccessed = currentTime();
+            scheduleIdleTimeout(mci);
+            try {
+                engine.add(mci);
+                return true;
+            } catch (IllegalStateException e) {
+                mci.cancelTimers();
+                closeConnectionExecutor.execute(() -> {
+                    quietlyCloseConnection(mci, "(sub-pool has been evicted)");
+                    releaseConnectionSlot();
+                    offerConnectionSlot();
+                });
+                return false;
+            }
+        }
+
         boolean shouldCreateAnotherConnection() {
             // only create connections if we need another idle connection or have threads still waiting
             // for a new connection, otherwise bail
-            return bag.size() < maxPoolSize &&
-                    (bag.getWaitingThreadCount() > 0 || bag.getCount(STATE_NOT_IN_USE) < minIdle);
+            return poolState != POOL_SUSPENDED && !isRetired() && engine.size() < maxPoolSize &&
+                    (engine.getWaitingThreadCount() > 0 || engine.getCount(STATE_NOT_IN_USE) < idleTarget());
         }
 
         /**
@@ -359,10 +1559,10 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
          */
         void logPoolState(String prefix) {
             LOG.log(Level.FINE, () -> poolName + " - " + (prefix != null ? prefix : "") + "stats (" +
-                            "total=" + bag.size() + ", " +
-                            "active=" + bag.getCount(STATE_IN_USE) + ", " +
-                            "idle=" + bag.getCount(STATE_NOT_IN_USE) + ", " +
-                            "waiting=" + bag.getWaitingThreadCount() + ")");
+                            "total=" + engine.size() + ", " +
+                            "active=" + engine.getCount(STATE_IN_USE) + ", " +
+                            "idle=" + engine.getCount(STATE_NOT_IN_USE) + ", " +
+                            "waiting=" + engine.getWaitingThreadCount() + ")");
         }
 
         /**
@@ -370,12 +1570,6 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
          */
         void houseKeep() {
             try {
-                // refresh timeouts in case they changed via MBean
-//                connectionTimeout = config.getConnectionTimeout();
-//                validationTimeout = config.getValidationTimeout();
-//                leakTask.updateLeakDetectionThreshold(config.getLeakDetectionThreshold());
-
-                final long idleTimeout = GenericConnectionManager.this.idleTimeout;
                 final long now = currentTime();
 
                 // Detect retrograde time, allowing +128ms as per NTP spec.
@@ -395,20 +1589,36 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
 
                 previous = now;
 
-                String afterPrefix = "Pool ";
-                if (idleTimeout > 0L && minIdle < maxPoolSize) {
-                    logPoolState("Before cleanup ");
-                    afterPrefix = "After cleanup  ";
-                    bag
+                if (adaptiveSizing) {
+                    adapt();
+                }
+                if (keepaliveTime > 0L) {
+                    keepalive(now);
+                }
+                // idle connections are closed by their timers, arm the ones which have missed
+                // a change of the idle timeout
+                if (idleTimeout() > 0L) {
+                    engine
                             .values(STATE_NOT_IN_USE)
                             .stream()
-                            .sorted(LASTACCESS_REVERSE_COMPARABLE)
-                            .skip(minIdle)
-                            .filter(mci -> elapsedMillis(mci.lastAccessed, now) > idleTimeout)
-                            .filter(bag::reserve)
-                            .forEachOrdered(mci -> closeConnection(mci, "(connection has passed idleTimeout)"));
+                            .filter(mci -> !mci.idleTimer.isScheduled())
+                            .forEach(this::scheduleIdleTimeout);
                 }
-                logPoolState(afterPrefix);
+                // sizes may have been changed through the MBean
+                final int maxPoolSize = GenericConnectionManager.this.maxPoolSize;
+                final int excess = engine.size() - maxPoolSize;
+                if (excess > 0) {
+                    // the pool has been shrunk, close the least recently used idle connections,
+                    // the remaining ones will be closed by the next runs once given back
+                    engine
+                            .values(STATE_NOT_IN_USE)
+                            .stream()
+                            .sorted(LASTACCESS_REVERSE_COMPARABLE.reversed())
+                            .limit(excess)
+                            .filter(engine::reserve)
+                            .forEachOrdered(mci -> closeConnection(mci, "(pool has been shrunk)"));
+                }
+                logPoolState("Pool ");
                 fillPool(); // Try to maintain minimum connections
             }
             catch (Exception e) {
@@ -416,13 +1626,87 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
             }
         }
 
+        /**
+         * Validate the idle connections which have been neither used nor validated for the keepalive time.
+         * They are reserved while being validated, so that borrowers do not have to wait for a round-trip
+         * to the database, and handed to the factory as a whole so that it can validate them in parallel.
+         */
+        void keepalive(long now) {
+            final List<ManagedConnectionInfo> stale = engine
+                    .values(STATE_NOT_IN_USE)
+                    .stream()
+                    .filter(mci -> elapsedMillis(mci.lastValidated(), now) > keepaliveTime)
+                    .filter(engine::reserve)
+                    .collect(Collectors.toList());
+            if (stale.isEmpty()) {
+                return;
+            }
+            LOG.fine(() -> poolName + " - Validating " + stale.size() + " idle connections");
+            keepaliveExecutor.execute(() -> validate(stale));
+        }
+
+        private void validate(List<ManagedConnectionInfo> stale) {
+            final Set<ManagedConnection> connections = new HashSet<>(stale.size() * 4 / 3 + 1);
+            for (ManagedConnectionInfo mci : stale) {
+                connections.add(mci.getManagedConnection());
+            }
+            final Set<?> invalid = getInvalidConnections(connections);
+            final long now = currentTime();
+            for (ManagedConnectionInfo mci : stale) {
+                if (destroyed || isRetired() || mci.isMarkedEvicted()) {
+                    closeConnection(mci, "(connection evicted)");
+                } else if (invalid.contains(mci.getManagedConnection())) {
+                    closeConnection(mci, "(connection failed keepalive validation)");
+                } else {
+                    mci.validatedAt = now;
+                    engine.unreserve(mci);
+                    scheduleIdleTimeout(mci);
+                }
+            }
+        }
+
+        /**
+         * The time after which an idle connection above the idle target is closed.
+         */
+        long idleTimeout() {
+            final long idleTimeout = GenericConnectionManager.this.idleTimeout;
+            if (adaptiveSizing) {
+                // connections above the target go back as soon as they have been idle for a full period
+                return idleTimeout > 0L ? Math.min(idleTimeout, houseKeepingPeriod) : houseKeepingPeriod;
+            }
+            return idleTimeout;
+        }
+
+        void scheduleIdleTimeout(ManagedConnectionInfo mci) {
+            final long idleTimeout = idleTimeout();
+            if (idleTimeout > 0L) {
+                timingWheel.schedule(mci.idleTimer, idleTimeout, MILLISECONDS);
+            }
+        }
+
+        /**
+         * Close a connection which has been idle for the idle timeout, unless the pool is at its idle target.
+         * Timers fire in the order the connections were given back, so the most recently used ones are kept.
+         */
+        void idleExpired(ManagedConnectionInfo mci) {
+            if (mci.getState() != STATE_NOT_IN_USE) {
+                return;
+            }
+            if (engine.getCount(STATE_NOT_IN_USE) > idleTarget() && engine.reserve(mci)) {
+                closeConnection(mci, "(connection has passed idleTimeout)");
+            } else if (mci.getState() == STATE_NOT_IN_USE) {
+                // needed to keep the idle target, check again later
+                scheduleIdleTimeout(mci);
+            }
+        }
+
         void softEvictConnections() {
-            bag.values().forEach(mci -> softEvictConnection(mci, "(connection evicted)", false /* not owner */));
+            engine.values().forEach(mci -> softEvictConnection(mci, "(connection evicted)", false /* not owner */));
         }
 
         void softEvictConnection(final ManagedConnectionInfo mci, final String reason, final boolean owner) {
             mci.markEvicted();
-            if (owner || bag.reserve(mci)) {
+            if (owner || engine.reserve(mci)) {
                 closeConnection(mci, reason);
             }
         }
@@ -434,10 +1718,16 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
          * @param closureReason reason to close
          */
         void closeConnection(final ManagedConnectionInfo mci, final String closureReason) {
-            if (bag.remove(mci)) {
+            if (engine.remove(mci)) {
+                mci.cancelTimers();
+                if (!destroyed) {
+                    metricsTracker.recordConnectionEvicted();
+                }
                 closeConnectionExecutor.execute(() -> {
                     quietlyCloseConnection(mci, closureReason);
+                    releaseConnectionSlot();
                     if (!destroyed) {
+                        offerConnectionSlot();
                         fillPool();
                     }
                 });
@@ -445,25 +1735,46 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
         }
 
         void requite(ManagedConnectionInfo mci) {
-            bag.requite(mci);
+            if (mci.getState() == PoolEngine.STATE_REMOVED) {
+                // the connection has been reclaimed while in use
+                return;
+            }
+            if (mci.leakTask != null) {
+                mci.leakTask.cancel();
+            }
+            final long now = currentTime();
+            metricsTracker.recordConnectionUsageMillis(elapsedMillis(mci.lastBorrowed, now));
+            if (starving && engine.size() > fairShare()) {
+                // another sub-pool is waiting for a connection slot
+                softEvictConnection(mci, "(connection reclaimed for another sub-pool)", true);
+                return;
+            }
+            mci.lastAccessed = now;
+            // armed before the connection can be borrowed again, which cancels it
+            scheduleIdleTimeout(mci);
+            engine.requite(mci);
         }
 
         ManagedConnectionInfo borrow(long timeout, TimeUnit timeUnit) throws InterruptedException {
-            return bag.borrow(timeout, timeUnit);
+            return engine.borrow(timeout, timeUnit);
+        }
+
+        CompletableFuture<ManagedConnectionInfo> borrowAsync(long timeout, TimeUnit timeUnit) {
+            return engine.borrowAsync(timeout, timeUnit, houseKeepingExecutorService);
         }
 
         ManagedConnectionInfo tryCreateManagedConnection() {
             try {
+                final long startTime = currentTime();
                 final ManagedConnectionInfo mci = doCreateManagedConnection();
+                metricsTracker.recordConnectionCreatedMillis(elapsedMillis(startTime));
 
                 final long maxLifetime = GenericConnectionManager.this.maxLifetime;
                 if (maxLifetime > 0) {
                     // variance up to 2.5% of the maxlifetime
                     final long variance = maxLifetime > 10_000 ? ThreadLocalRandom.current().nextLong(maxLifetime / 40) : 0;
                     final long lifetime = maxLifetime - variance;
-                    mci.setFutureEol(houseKeepingExecutorService.schedule(
-                            () -> softEvictConnection(mci, "(connection has passed maxLifetime)", false /* not owner */),
-                            lifetime, MILLISECONDS));
+                    timingWheel.schedule(mci.endOfLife, lifetime, MILLISECONDS);
                 }
                 return mci;
             } catch (Exception e) {
@@ -490,23 +1801,92 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
 
         void close() {
             logPoolState("Before shutdown ");
-            bag.close();
-            bag.values().forEach(mci -> closeConnection(mci, "pool destroyed"));
+            engine.close();
+            engine.values().forEach(mci -> closeConnection(mci, "pool destroyed"));
+            metricsTracker.close();
+        }
+
+    }
+
+    /**
+     * Reports a connection which has not been given back to the pool within the leak detection threshold.
+     * The stack trace of the borrower is only captured for a sample of the borrows, as it is costly.
+     */
+    final class LeakTask implements Runnable {
+
+        private final ManagedConnectionInfo mci;
+        private final TimingWheel.Timer timer;
+        // written by the borrower, read by the timer thread
+        private volatile String threadName;
+        private volatile Exception borrower;
+        private volatile boolean active;
+        private volatile boolean leaked;
+
+        LeakTask(ManagedConnectionInfo mci) {
+            this.mci = mci;
+            this.timer = timingWheel.newTimer(this);
+        }
+
+        void start() {
+            active = true;
+            threadName = Thread.currentThread().getName();
+            borrower = leakDetectionSampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < leakDetectionSampleRate
+                    ? new Exception("Apparent connection leak detected") : null;
+            leaked = false;
+            timingWheel.schedule(timer, leakDetectionThreshold, MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            if (!active || mci.getState() != STATE_IN_USE) {
+                // given back while the timer was firing
+                return;
+            }
+            leaked = true;
+            leakedConnections.increment();
+            final String message = poolName + " - Connection leak detection triggered for " + mci.getManagedConnection()
+                    + " on thread " + threadName + ", borrowed " + elapsedMillis(mci.lastBorrowed) + "ms ago";
+            if (borrower != null) {
+                LOG.log(Level.WARNING, message + ", stack trace follows", borrower);
+            } else {
+                LOG.warning(message);
+            }
+            if (leakReclaim) {
+                if (mci.transaction != null) {
+                    LOG.warning(() -> poolName + " - Not reclaiming leaked connection " + mci.getManagedConnection() + " as it is enlisted in a transaction");
+                } else {
+                    leaked = false;
+                    mci.markEvicted();
+                    mci.pool.closeConnection(mci, "(connection leaked)");
+                }
+            }
         }
 
+        void cancel() {
+            active = false;
+            timingWheel.cancel(timer);
+            if (leaked) {
+                leaked = false;
+                LOG.info(() -> poolName + " - Previously reported leaked connection " + mci.getManagedConnection()
+                        + " on thread " + threadName + " was returned to the pool (unleaked)");
+            }
+        }
     }
 
-    final class ManagedConnectionInfo implements ConcurrentBag.IConcurrentBagEntry, ConnectionEventListener {
+    final class ManagedConnectionInfo implements PoolEngine.Entry, ConcurrentBag.IConcurrentBagEntry, ConnectionEventListener {
 
         final Pool pool;
         final ManagedConnection managedConnection;
         final NamedResource xares;
 
-        volatile ScheduledFuture<?> endOfLife;
+        final TimingWheel.Timer endOfLife;
+        final TimingWheel.Timer idleTimer;
+        LeakTask leakTask;
         volatile int state;
         volatile boolean evict;
         long lastAccessed;
         long lastBorrowed;
+        long validatedAt = currentTime();
 
         Transaction transaction;
 
@@ -514,6 +1894,8 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
             this.pool = pool;
             this.managedConnection = mc;
             this.xares = xares;
+            this.endOfLife = timingWheel.newTimer(() -> pool.softEvictConnection(this, "(connection has passed maxLifetime)", false /* not owner */));
+            this.idleTimer = timingWheel.newTimer(() -> pool.idleExpired(this));
             mc.addConnectionEventListener(this);
         }
 
@@ -532,6 +1914,14 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
             stateUpdater.set(this, update);
         }
 
+        /**
+         * The last time the connection was known to be valid, either because it was validated
+         * or because it has just been used.
+         */
+        long lastValidated() {
+            return validatedAt - lastAccessed > 0L ? validatedAt : lastAccessed;
+        }
+
         boolean isMarkedEvicted() {
             return evict;
         }
@@ -548,12 +1938,32 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
             return xares;
         }
 
-        void setFutureEol(ScheduledFuture<?> futureEol) {
-            this.endOfLife = futureEol;
+        void cancelTimers() {
+            timingWheel.cancel(endOfLife);
+            timingWheel.cancel(idleTimer);
+            if (leakTask != null) {
+                leakTask.cancel();
+            }
         }
 
         void requite() {
             transaction = null;
+            if (getState() == PoolEngine.STATE_REMOVED) {
+                // reclaimed while in use, e.g. as a leak, the physical connection is already being closed
+                return;
+            }
+            if (resetExecutor != null) {
+                // the application is done with the connection, only the cleanup is deferred
+                if (leakTask != null) {
+                    leakTask.cancel();
+                }
+                deferReset(this);
+            } else {
+                reset();
+            }
+        }
+
+        void reset() {
             try {
                 managedConnection.cleanup();
                 pool.requite(this);
@@ -597,15 +2007,6 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
             pool.closeConnection(this, "Connection error: " + event.getException());
         }
 
-//            Connection close()
-//            {
-//                ScheduledFuture<?> eol = endOfLife;
-//                if (eol != null && !eol.isDone() && !eol.cancel(false)) {
-//                    LOG.warning(name + " - maxLifeTime expiration task cancellation unexpectedly returned false for connection " + managedConnection);
-//                }
-//                endOfLife = null;
-//            }
-
         @Override
         public String toString() {
             return "ManagedConnectionInfo[" + Integer.toHexString(hashCode()) + ", mc: " + managedConnection + ", state: " + stateToString() + "]";
@@ -614,13 +2015,13 @@ public class GenericConnectionManager implements ConnectionManager, AutoCloseabl
         private String stateToString()
         {
             switch (state) {
-                case STATE_IN_USE:
+                case PoolEngine.STATE_IN_USE:
                     return "IN_USE";
-                case STATE_NOT_IN_USE:
+                case PoolEngine.STATE_NOT_IN_USE:
                     return "NOT_IN_USE";
-                case STATE_REMOVED:
+                case PoolEngine.STATE_REMOVED:
                     return "REMOVED";
-                case STATE_RESERVED:
+                case PoolEngine.STATE_RESERVED:
                     return "RESERVED";
                 default:
                     return "Invalid";
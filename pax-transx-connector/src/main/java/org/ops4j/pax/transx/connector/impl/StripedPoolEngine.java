@@ -0,0 +1,299 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.impl;
+
+import org.ops4j.pax.transx.connector.PoolEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Pool engine which spreads idle entries over one stripe per core.
+ *
+ * Threads are assigned a home stripe the first time they use the engine and stick to it:
+ * entries are returned to the home stripe and looked for there first. On a miss, the
+ * neighbouring stripes are scanned, closest first, and only when all stripes are empty does
+ * the thread enqueue itself on a global FIFO wait queue and park until an entry is handed over.
+ *
+ * Stripes may hold a stale reference to an entry which has been borrowed or handed over
+ * from elsewhere, it is skipped and dropped as the state of an entry is the only authority.
+ * An entry is never queued twice though, so that the stripes stay bounded by the pool size.
+ */
+public class StripedPoolEngine<T extends PoolEngine.Entry> implements PoolEngine<T> {
+
+    private static final Logger LOG = Logger.getLogger(StripedPoolEngine.class.getName());
+
+    /**
+     * Round-robin assignment of home stripes.  Java does not expose the current core,
+     * so spreading threads evenly is the closest we can get to core affinity.
+     */
+    private static final AtomicInteger NEXT_HOME = new AtomicInteger();
+    private static final ThreadLocal<Integer> HOME = ThreadLocal.withInitial(NEXT_HOME::getAndIncrement);
+
+    private final Listener listener;
+    private final CopyOnWriteArrayList<T> entries = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedDeque<T>[] stripes;
+    private final int mask;
+    /**
+     * The stripe each idle entry has been queued on, so that an entry is queued at most once
+     * and can be unlinked from its stripe when it is removed from the pool.
+     */
+    private final ConcurrentMap<T, ConcurrentLinkedDeque<T>> queued = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<Waiter<T>> waiters = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private volatile boolean closed;
+
+    @SuppressWarnings("unchecked")
+    public StripedPoolEngine(Listener listener) {
+        this.listener = listener;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int n = Integer.highestOneBit(Math.max(1, cores - 1) << 1);
+        this.stripes = new ConcurrentLinkedDeque[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new ConcurrentLinkedDeque<>();
+        }
+        this.mask = n - 1;
+    }
+
+    private int home() {
+        return HOME.get() & mask;
+    }
+
+    @Override
+    public T borrow(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        final int home = home();
+        T entry = poll(home);
+        if (entry != null) {
+            return entry;
+        }
+
+        final Waiter<T> waiter = Waiter.parked(Thread.currentThread());
+        waiters.offer(waiter);
+        final int waiting = this.waiting.incrementAndGet();
+        try {
+            // an entry may have been returned before we were visible to releasers
+            entry = poll(home);
+            if (entry != null) {
+                if (!waiter.cancel()) {
+                    // we have also been handed one in the meantime
+                    requite(entry);
+                    entry = waiter.take();
+                }
+                return entry;
+            }
+
+            listener.addItem(waiting);
+
+            return waiter.await(timeUnit.toNanos(timeout), this);
+        } finally {
+            this.waiting.decrementAndGet();
+            waiters.remove(waiter);
+        }
+    }
+
+    @Override
+    public CompletableFuture<T> borrowAsync(long timeout, TimeUnit timeUnit, ScheduledExecutorService scheduler) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final int home = home();
+        T entry = poll(home);
+        if (entry != null) {
+            future.complete(entry);
+            return future;
+        }
+
+        final Waiter<T> waiter = Waiter.async(future);
+        waiters.offer(waiter);
+        final int waiting = this.waiting.incrementAndGet();
+        future.whenComplete((e, t) -> {
+            waiter.cancel();
+            this.waiting.decrementAndGet();
+            waiters.remove(waiter);
+        });
+
+        // an entry may have been returned before we were visible to releasers
+        entry = poll(home);
+        if (entry != null) {
+            if (!waiter.cancel() || !future.complete(entry)) {
+                requite(entry);
+            }
+            return future;
+        }
+
+        listener.addItem(waiting);
+
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (waiter.cancel()) {
+                future.complete(null);
+            }
+        }, timeout, timeUnit);
+        future.whenComplete((e, t) -> timer.cancel(false));
+        return future;
+    }
+
+    /**
+     * Look for an idle entry in the home stripe, then in the neighbouring ones.
+     */
+    private T poll(int home) {
+        T entry = poll(stripes[home]);
+        for (int d = 1; entry == null && d <= (mask + 1) / 2; d++) {
+            entry = poll(stripes[(home + d) & mask]);
+            if (entry == null && d != mask + 1 - d) {
+                entry = poll(stripes[(home - d) & mask]);
+            }
+        }
+        return entry;
+    }
+
+    private T poll(ConcurrentLinkedDeque<T> stripe) {
+        T entry;
+        while ((entry = stripe.pollFirst()) != null) {
+            // forget it before claiming it, so that a concurrent release queues it again if we lose
+            queued.remove(entry, stripe);
+            if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void requite(T entry) {
+        if (entry.getState() == STATE_REMOVED) {
+            return;
+        }
+        entry.setState(STATE_NOT_IN_USE);
+        release(entry);
+    }
+
+    /**
+     * Hand an idle entry to the oldest waiter, or park it on the home stripe.
+     */
+    private void release(T entry) {
+        if (handOff(entry)) {
+            return;
+        }
+        ConcurrentLinkedDeque<T> stripe = stripes[home()];
+        if (queued.putIfAbsent(entry, stripe) == null) {
+            stripe.addFirst(entry);
+        }
+        // a borrower may have enqueued itself after we last looked, it will also
+        // rescan the stripes but we don't want it to park while the entry is idle
+        handOff(entry);
+    }
+
+    private boolean handOff(T entry) {
+        Waiter<T> waiter;
+        while (waiting.get() > 0 && (waiter = waiters.poll()) != null) {
+            if (!entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+                // borrowed by someone else already, give the waiter back its place at the head
+                waiters.offerFirst(waiter);
+                return true;
+            }
+            if (waiter.offer(entry)) {
+                return true;
+            }
+            entry.setState(STATE_NOT_IN_USE);
+        }
+        return false;
+    }
+
+    @Override
+    public void add(T entry) {
+        if (closed) {
+            LOG.info("StripedPoolEngine has been closed, ignoring add()");
+            throw new IllegalStateException("StripedPoolEngine has been closed, ignoring add()");
+        }
+        entries.add(entry);
+        entry.setState(STATE_NOT_IN_USE);
+        release(entry);
+    }
+
+    @Override
+    public boolean remove(T entry) {
+        if (!entry.compareAndSet(STATE_IN_USE, STATE_REMOVED) && !entry.compareAndSet(STATE_RESERVED, STATE_REMOVED) && !closed) {
+            LOG.warning("Attempt to remove an object from the pool that was not borrowed or reserved: " + entry);
+            return false;
+        }
+        ConcurrentLinkedDeque<T> stripe = queued.remove(entry);
+        if (stripe != null) {
+            stripe.removeFirstOccurrence(entry);
+        }
+        return entries.remove(entry);
+    }
+
+    @Override
+    public boolean reserve(T entry) {
+        return entry.compareAndSet(STATE_NOT_IN_USE, STATE_RESERVED);
+    }
+
+    @Override
+    public void unreserve(T entry) {
+        if (entry.compareAndSet(STATE_RESERVED, STATE_NOT_IN_USE)) {
+            release(entry);
+        } else {
+            LOG.warning("Attempt to relinquish an object to the pool that was not reserved: " + entry);
+        }
+    }
+
+    @Override
+    public List<T> values(int state) {
+        return entries.stream().filter(e -> e.getState() == state).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<T> values() {
+        return new ArrayList<>(entries);
+    }
+
+    @Override
+    public int getCount(int state) {
+        int count = 0;
+        for (T entry : entries) {
+            if (entry.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getWaitingThreadCount() {
+        return waiting.get();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+}
@@ -42,6 +42,15 @@ public class SubjectCRIKey {
         return cri;
     }
 
+    /**
+     * Check if this key is the one that would be built for the given subject and request info,
+     * without having to allocate it.
+     */
+    public boolean matches(Subject subject, ConnectionRequestInfo cri) {
+        return Objects.equals(this.cri, cri)
+                && Objects.equals(this.subject, subject);
+    }
+
     @Override
     public int hashCode() {
         return hashcode;
@@ -0,0 +1,227 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timing wheel for the per-connection timers: lifetime, idle and leak expiry.
+ *
+ * Timers are hashed by deadline into a ring of buckets, each with its own lock, so that
+ * scheduling and cancelling are constant time and do not contend with each other.  The wheel
+ * does not own a thread, {@link #advance()} has to be called every tick, and timers fire
+ * up to one tick late.
+ *
+ * A timer is allocated once and can be scheduled again at any time, so that re-arming it,
+ * e.g. each time a connection goes back to the pool, does not allocate.
+ */
+public final class TimingWheel {
+
+    private static final Logger LOG = Logger.getLogger(TimingWheel.class.getName());
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final ReentrantLock advanceLock = new ReentrantLock();
+    private final List<Timer> expired = new ArrayList<>();
+    private long tick;
+
+    /**
+     * @param tick the resolution of the wheel
+     * @param unit the unit of the resolution
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     */
+    public TimingWheel(long tick, TimeUnit unit, int wheelSize) {
+        this.tickNanos = Math.max(1L, unit.toNanos(tick));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = size - 1;
+    }
+
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    public Timer newTimer(Runnable task) {
+        return new Timer(task);
+    }
+
+    /**
+     * Schedule the timer, replacing its current deadline if it is already scheduled.
+     */
+    public void schedule(Timer timer, long delay, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(delay);
+        // never hash into a bucket which has already been processed for the current round
+        final long ticks = Math.max((deadline - startTime + tickNanos - 1) / tickNanos, currentTick() + 1);
+        final Bucket bucket = buckets[(int) (ticks & mask)];
+        // cancelling and expiring only need the bucket lock, but a timer must be linked only once
+        synchronized (timer) {
+            cancel(timer);
+            bucket.lock();
+            try {
+                timer.deadline = deadline;
+                bucket.link(timer);
+            } finally {
+                bucket.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return true if the timer was scheduled and will not fire
+     */
+    public boolean cancel(Timer timer) {
+        for (;;) {
+            final Bucket bucket = timer.bucket;
+            if (bucket == null) {
+                return false;
+            }
+            bucket.lock();
+            try {
+                if (timer.bucket == bucket) {
+                    bucket.unlink(timer);
+                    return true;
+                }
+            } finally {
+                bucket.unlock();
+            }
+        }
+    }
+
+    /**
+     * Fire the timers which have expired since the last call.  The tasks are run by the calling thread.
+     */
+    public void advance() {
+        if (!advanceLock.tryLock()) {
+            return;
+        }
+        try {
+            final long now = System.nanoTime();
+            final long target = (now - startTime) / tickNanos;
+            // a whole round visits every bucket, no need to go around several times after a pause
+            final long from = Math.max(tick, target - mask);
+            for (long t = from; t <= target; t++) {
+                final Bucket bucket = buckets[(int) (t & mask)];
+                bucket.lock();
+                try {
+                    bucket.expire(now, expired);
+                } finally {
+                    bucket.unlock();
+                }
+            }
+            tick = target + 1;
+            for (Timer timer : expired) {
+                try {
+                    timer.task.run();
+                } catch (Throwable t) {
+                    LOG.log(Level.WARNING, "Unexpected exception in timer task", t);
+                }
+            }
+        } finally {
+            expired.clear();
+            advanceLock.unlock();
+        }
+    }
+
+    /**
+     * Cancel all the timers.
+     */
+    public void clear() {
+        for (Bucket bucket : buckets) {
+            bucket.lock();
+            try {
+                while (bucket.head != null) {
+                    bucket.unlink(bucket.head);
+                }
+            } finally {
+                bucket.unlock();
+            }
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startTime) / tickNanos;
+    }
+
+    public static final class Timer {
+
+        private final Runnable task;
+        private volatile Bucket bucket;
+        private Timer prev;
+        private Timer next;
+        private long deadline;
+
+        private Timer(Runnable task) {
+            this.task = task;
+        }
+
+        public boolean isScheduled() {
+            return bucket != null;
+        }
+    }
+
+    private static final class Bucket extends ReentrantLock {
+
+        private Timer head;
+
+        void link(Timer timer) {
+            timer.prev = null;
+            timer.next = head;
+            if (head != null) {
+                head.prev = timer;
+            }
+            head = timer;
+            timer.bucket = this;
+        }
+
+        void unlink(Timer timer) {
+            if (timer.prev != null) {
+                timer.prev.next = timer.next;
+            } else {
+                head = timer.next;
+            }
+            if (timer.next != null) {
+                timer.next.prev = timer.prev;
+            }
+            timer.prev = null;
+            timer.next = null;
+            timer.bucket = null;
+        }
+
+        void expire(long now, List<Timer> expired) {
+            Timer timer = head;
+            while (timer != null) {
+                final Timer next = timer.next;
+                if (timer.deadline - now <= 0L) {
+                    unlink(timer);
+                    expired.add(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+}
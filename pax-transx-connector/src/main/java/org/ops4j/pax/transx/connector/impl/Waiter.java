@@ -0,0 +1,120 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A borrower waiting for a pool entry, either a parked thread or a future.
+ *
+ * The slot goes from null to either the handed over entry or {@link #CANCELLED}
+ * exactly once, so that an entry can never be both handed over and lost to a
+ * waiter which has given up.
+ */
+final class Waiter<T> {
+
+    private static final Object CANCELLED = new Object();
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Waiter, Object> entryUpdater
+            = AtomicReferenceFieldUpdater.newUpdater(Waiter.class, Object.class, "entry");
+
+    private final Thread thread;
+    private final CompletableFuture<T> future;
+    private volatile Object entry;
+
+    private Waiter(Thread thread, CompletableFuture<T> future) {
+        this.thread = thread;
+        this.future = future;
+    }
+
+    static <T> Waiter<T> parked(Thread thread) {
+        return new Waiter<>(thread, null);
+    }
+
+    static <T> Waiter<T> async(CompletableFuture<T> future) {
+        return new Waiter<>(null, future);
+    }
+
+    /**
+     * Hand over an entry.
+     *
+     * @return false if the waiter has given up, in which case the entry still belongs to the caller
+     */
+    boolean offer(T entry) {
+        if (!entryUpdater.compareAndSet(this, null, entry)) {
+            return false;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            return true;
+        }
+        // the future may have been cancelled by the caller in the meantime
+        return future.complete(entry);
+    }
+
+    /**
+     * Give up waiting.
+     *
+     * @return false if an entry has already been handed over
+     */
+    boolean cancel() {
+        return entryUpdater.compareAndSet(this, null, CANCELLED);
+    }
+
+    boolean isCancelled() {
+        return entry == CANCELLED;
+    }
+
+    /**
+     * Park the calling thread until an entry is handed over or the timeout expires.
+     *
+     * @return the entry, or null if the timeout expired
+     */
+    @SuppressWarnings("unchecked")
+    T await(long nanos, Object blocker) throws InterruptedException {
+        final long deadline = System.nanoTime() + nanos;
+        boolean interrupted = false;
+        while (entry == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L || interrupted) {
+                if (cancel()) {
+                    if (interrupted) {
+                        throw new InterruptedException();
+                    }
+                    return null;
+                }
+                break;
+            }
+            LockSupport.parkNanos(blocker, remaining);
+            interrupted = Thread.interrupted();
+        }
+        if (interrupted) {
+            // the entry was handed over before we noticed, keep the interrupt for the caller
+            Thread.currentThread().interrupt();
+        }
+        return (T) entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    T take() {
+        return (T) entry;
+    }
+
+}
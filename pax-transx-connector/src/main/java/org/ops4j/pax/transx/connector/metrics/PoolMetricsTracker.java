@@ -0,0 +1,77 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.metrics;
+
+/**
+ * Receives the events of a sub-pool of a connection manager.
+ *
+ * All the methods are called on the hot path and must not block.  They do nothing
+ * by default, so that implementations only need to override what they record.
+ */
+public interface PoolMetricsTracker extends AutoCloseable {
+
+    /**
+     * A tracker which records nothing.
+     */
+    PoolMetricsTracker NOOP = new PoolMetricsTracker() {
+    };
+
+    /**
+     * A physical connection has been created.
+     */
+    default void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+    }
+
+    /**
+     * A connection has been borrowed from the pool, after waiting for the given time.
+     */
+    default void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+    }
+
+    /**
+     * A connection has been given back to the pool after being used for the given time.
+     */
+    default void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+    }
+
+    /**
+     * No connection became available within the connection timeout.
+     */
+    default void recordConnectionTimeout() {
+    }
+
+    /**
+     * A physical connection has been closed by the pool, because it was evicted,
+     * has reached its idle timeout or maximum lifetime, or is broken.
+     */
+    default void recordConnectionEvicted() {
+    }
+
+    /**
+     * The creation of a physical connection has been held back by the creation limits.
+     */
+    default void recordConnectionCreationThrottled() {
+    }
+
+    /**
+     * The sub-pool has been closed.
+     */
+    @Override
+    default void close() {
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.metrics;
+
+/**
+ * Creates the metrics tracker of each sub-pool of a connection manager.
+ *
+ * A connection manager has a sub-pool for each subject and connection request info
+ * it has been asked connections for, most of the time there is a single one.
+ */
+public interface PoolMetricsTrackerFactory {
+
+    /**
+     * @param poolName the name of the connection manager's pool
+     * @param subPoolName identifies the sub-pool within the pool, "0" for the first one
+     * @param poolStats live statistics of the sub-pool, to be exposed as gauges
+     */
+    PoolMetricsTracker create(String poolName, String subPoolName, PoolStats poolStats);
+
+}
@@ -0,0 +1,113 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.metrics.dropwizard;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Timer;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTracker;
+import org.ops4j.pax.transx.connector.metrics.PoolStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Metrics are named {@code <pool>.<subpool>.pool.<metric>}.
+ */
+public class DropwizardMetricsTracker implements PoolMetricsTracker {
+
+    public static final String METRIC_CATEGORY = "pool";
+
+    private final MetricRegistry registry;
+    private final List<String> names = new ArrayList<>();
+    private final String prefix;
+    private final Histogram creation;
+    private final Timer acquire;
+    private final Histogram usage;
+    private final Meter timeouts;
+    private final Meter evictions;
+    private final Meter throttled;
+
+    public DropwizardMetricsTracker(String poolName, String subPoolName, PoolStats poolStats,
+                                    MetricRegistry registry, Supplier<Reservoir> reservoirs) {
+        this.registry = registry;
+        this.prefix = MetricRegistry.name(poolName, subPoolName, METRIC_CATEGORY);
+
+        creation = register("ConnectionCreation", new Histogram(reservoirs.get()));
+        acquire = register("Wait", new Timer(reservoirs.get()));
+        usage = register("Usage", new Histogram(reservoirs.get()));
+        timeouts = register("ConnectionTimeoutRate", new Meter());
+        evictions = register("ConnectionEvictionRate", new Meter());
+        throttled = register("ConnectionCreationThrottleRate", new Meter());
+
+        register("TotalConnections", (Gauge<Integer>) poolStats::getTotalConnections);
+        register("IdleConnections", (Gauge<Integer>) poolStats::getIdleConnections);
+        register("ActiveConnections", (Gauge<Integer>) poolStats::getActiveConnections);
+        register("PendingConnections", (Gauge<Integer>) poolStats::getPendingThreads);
+        register("MaxConnections", (Gauge<Integer>) poolStats::getMaxConnections);
+        register("MinConnections", (Gauge<Integer>) poolStats::getMinConnections);
+    }
+
+    private <T extends Metric> T register(String name, T metric) {
+        String fullName = MetricRegistry.name(prefix, name);
+        registry.register(fullName, metric);
+        names.add(fullName);
+        return metric;
+    }
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        creation.update(connectionCreatedMillis);
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquire.update(elapsedAcquiredNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usage.update(elapsedBorrowedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.mark();
+    }
+
+    @Override
+    public void recordConnectionEvicted() {
+        evictions.mark();
+    }
+
+    @Override
+    public void recordConnectionCreationThrottled() {
+        throttled.mark();
+    }
+
+    @Override
+    public void close() {
+        names.forEach(registry::remove);
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.metrics.dropwizard;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reservoir;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTracker;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTrackerFactory;
+import org.ops4j.pax.transx.connector.metrics.PoolStats;
+
+import java.util.function.Supplier;
+
+/**
+ * Publishes the pool metrics to a Dropwizard registry.
+ *
+ * Timers and histograms use the given reservoirs, an HdrHistogram based one
+ * is recommended to keep the tail latencies accurate.
+ */
+public class DropwizardMetricsTrackerFactory implements PoolMetricsTrackerFactory {
+
+    private final MetricRegistry registry;
+    private final Supplier<Reservoir> reservoirs;
+
+    public DropwizardMetricsTrackerFactory(MetricRegistry registry) {
+        this(registry, ExponentiallyDecayingReservoir::new);
+    }
+
+    public DropwizardMetricsTrackerFactory(MetricRegistry registry, Supplier<Reservoir> reservoirs) {
+        this.registry = registry;
+        this.reservoirs = reservoirs;
+    }
+
+    @Override
+    public PoolMetricsTracker create(String poolName, String subPoolName, PoolStats poolStats) {
+        return new DropwizardMetricsTracker(poolName, subPoolName, poolStats, registry, reservoirs);
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.metrics.micrometer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTracker;
+import org.ops4j.pax.transx.connector.metrics.PoolStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Timers are published with percentile histograms, so that the latency
+ * distribution can be aggregated across sub-pools and nodes.
+ */
+public class MicrometerMetricsTracker implements PoolMetricsTracker {
+
+    public static final String METRIC_NAME_PREFIX = "transx.connections";
+
+    private final MeterRegistry registry;
+    private final List<Meter> meters = new ArrayList<>();
+    private final Timer creation;
+    private final Timer acquire;
+    private final Timer usage;
+    private final Counter timeouts;
+    private final Counter evictions;
+    private final Counter throttled;
+
+    public MicrometerMetricsTracker(String poolName, String subPoolName, PoolStats poolStats, MeterRegistry registry) {
+        this.registry = registry;
+        Tags tags = Tags.of("pool", poolName, "subpool", subPoolName);
+
+        creation = timer(METRIC_NAME_PREFIX + ".creation", "Connection creation time", tags);
+        acquire = timer(METRIC_NAME_PREFIX + ".acquire", "Time waiting to borrow a connection", tags);
+        usage = timer(METRIC_NAME_PREFIX + ".usage", "Time connections are in use", tags);
+        timeouts = counter(METRIC_NAME_PREFIX + ".timeout", "Connection acquisition timeouts", tags);
+        evictions = counter(METRIC_NAME_PREFIX + ".evicted", "Connections closed by the pool", tags);
+        throttled = counter(METRIC_NAME_PREFIX + ".throttled", "Connection creations held back by the creation limits", tags);
+
+        gauge(METRIC_NAME_PREFIX, "Total connections", tags, poolStats, PoolStats::getTotalConnections);
+        gauge(METRIC_NAME_PREFIX + ".idle", "Idle connections", tags, poolStats, PoolStats::getIdleConnections);
+        gauge(METRIC_NAME_PREFIX + ".active", "Active connections", tags, poolStats, PoolStats::getActiveConnections);
+        gauge(METRIC_NAME_PREFIX + ".pending", "Threads waiting for a connection", tags, poolStats, PoolStats::getPendingThreads);
+        gauge(METRIC_NAME_PREFIX + ".max", "Maximum connections", tags, poolStats, PoolStats::getMaxConnections);
+        gauge(METRIC_NAME_PREFIX + ".min", "Minimum idle connections", tags, poolStats, PoolStats::getMinConnections);
+    }
+
+    private Timer timer(String name, String description, Tags tags) {
+        Timer timer = Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+        meters.add(timer);
+        return timer;
+    }
+
+    private Counter counter(String name, String description, Tags tags) {
+        Counter counter = Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+        meters.add(counter);
+        return counter;
+    }
+
+    private void gauge(String name, String description, Tags tags, PoolStats poolStats, ToDoubleFunction<PoolStats> f) {
+        meters.add(Gauge.builder(name, poolStats, f)
+                .description(description)
+                .tags(tags)
+                .register(registry));
+    }
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        creation.record(connectionCreatedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquire.record(elapsedAcquiredNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usage.record(elapsedBorrowedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    @Override
+    public void recordConnectionEvicted() {
+        evictions.increment();
+    }
+
+    @Override
+    public void recordConnectionCreationThrottled() {
+        throttled.increment();
+    }
+
+    @Override
+    public void close() {
+        meters.forEach(registry::remove);
+    }
+
+}
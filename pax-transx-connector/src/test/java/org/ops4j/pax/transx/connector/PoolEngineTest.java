@@ -0,0 +1,214 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector;
+
+import com.zaxxer.hikari.util.ConcurrentBag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.ops4j.pax.transx.connector.PoolEngine.STATE_IN_USE;
+import static org.ops4j.pax.transx.connector.PoolEngine.STATE_NOT_IN_USE;
+import static org.ops4j.pax.transx.connector.PoolEngine.STATE_RESERVED;
+
+@RunWith(Parameterized.class)
+public class PoolEngineTest {
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] {
+                { "BAG", PoolEngines.BAG },
+                { "STRIPED", PoolEngines.STRIPED },
+                { "FIFO", PoolEngines.FIFO },
+        });
+    }
+
+    private final PoolEngine.Factory factory;
+    private final AtomicInteger addItemCalls = new AtomicInteger();
+    private PoolEngine<TestEntry> engine;
+    private ScheduledExecutorService scheduler;
+
+    public PoolEngineTest(String name, PoolEngine.Factory factory) {
+        this.factory = factory;
+    }
+
+    @Before
+    public void setUp() {
+        engine = factory.create(waiting -> {
+            addItemCalls.incrementAndGet();
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        engine.close();
+        scheduler.shutdownNow();
+    }
+
+    @Test(timeout = 10_000)
+    public void testBorrowAndRequite() throws Exception {
+        TestEntry e1 = new TestEntry();
+        TestEntry e2 = new TestEntry();
+        engine.add(e1);
+        engine.add(e2);
+        assertEquals(2, engine.size());
+        assertEquals(2, engine.getCount(STATE_NOT_IN_USE));
+
+        Set<TestEntry> borrowed = new HashSet<>();
+        borrowed.add(engine.borrow(1, SECONDS));
+        borrowed.add(engine.borrow(1, SECONDS));
+        assertEquals(new HashSet<>(Arrays.asList(e1, e2)), borrowed);
+        assertEquals(STATE_IN_USE, e1.getState());
+        assertEquals(2, engine.getCount(STATE_IN_USE));
+
+        engine.requite(e1);
+        assertEquals(STATE_NOT_IN_USE, e1.getState());
+        assertSame(e1, engine.borrow(1, SECONDS));
+        engine.requite(e1);
+        engine.requite(e2);
+        assertEquals(2, engine.getCount(STATE_NOT_IN_USE));
+    }
+
+    @Test(timeout = 10_000)
+    public void testBorrowTimesOut() throws Exception {
+        long start = System.nanoTime();
+        assertNull(engine.borrow(200, MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= MILLISECONDS.toNanos(200));
+        assertTrue(addItemCalls.get() > 0);
+        assertEquals(0, engine.getWaitingThreadCount());
+
+        assertNull(engine.borrowAsync(200, MILLISECONDS, scheduler).get(5, SECONDS));
+        assertEquals(0, engine.getWaitingThreadCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void testWaiterIsHandedRequitedEntry() throws Exception {
+        TestEntry entry = new TestEntry();
+        engine.add(entry);
+        assertSame(entry, engine.borrow(1, SECONDS));
+
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<TestEntry> waiter = CompletableFuture.supplyAsync(() -> {
+            started.countDown();
+            try {
+                return engine.borrow(5, SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        started.await();
+        while (engine.getWaitingThreadCount() == 0) {
+            Thread.sleep(10);
+        }
+        engine.requite(entry);
+        assertSame(entry, waiter.get(5, SECONDS));
+        assertEquals(STATE_IN_USE, entry.getState());
+    }
+
+    @Test(timeout = 10_000)
+    public void testAsyncWaiterIsHandedRequitedEntry() throws Exception {
+        TestEntry entry = new TestEntry();
+        engine.add(entry);
+        assertSame(entry, engine.borrowAsync(1, SECONDS, scheduler).get(1, SECONDS));
+
+        Future<TestEntry> waiter = engine.borrowAsync(5, SECONDS, scheduler);
+        assertFalse(waiter.isDone());
+        engine.requite(entry);
+        assertSame(entry, waiter.get(5, SECONDS));
+        assertEquals(STATE_IN_USE, entry.getState());
+    }
+
+    @Test(timeout = 10_000)
+    public void testReserveAndRemove() throws Exception {
+        TestEntry entry = new TestEntry();
+        engine.add(entry);
+        assertTrue(engine.reserve(entry));
+        assertEquals(STATE_RESERVED, entry.getState());
+        assertNull(engine.borrow(100, MILLISECONDS));
+
+        engine.unreserve(entry);
+        assertSame(entry, engine.borrow(1, SECONDS));
+        assertFalse(engine.reserve(entry));
+        assertTrue(engine.remove(entry));
+        assertEquals(0, engine.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void testAddAfterClose() {
+        engine.close();
+        try {
+            engine.add(new TestEntry());
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, engine.size());
+    }
+
+    /**
+     * Entry usable by all the engines, the bag needs its own entry interface.
+     */
+    static class TestEntry implements PoolEngine.Entry, ConcurrentBag.IConcurrentBagEntry {
+
+        private static final AtomicIntegerFieldUpdater<TestEntry> STATE
+                = AtomicIntegerFieldUpdater.newUpdater(TestEntry.class, "state");
+
+        private volatile int state;
+
+        @Override
+        public int getState() {
+            return state;
+        }
+
+        @Override
+        public boolean compareAndSet(int expect, int update) {
+            return STATE.compareAndSet(this, expect, update);
+        }
+
+        @Override
+        public void setState(int update) {
+            state = update;
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.impl;
+
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CreationLimiterTest {
+
+    @Test
+    public void testNoLimit() {
+        CreationLimiter limiter = new CreationLimiter(0, 1, 10_000);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0L, limiter.acquire());
+        }
+        assertEquals(0L, limiter.getThrottledCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void testRateIsEnforced() throws Exception {
+        CreationLimiter limiter = new CreationLimiter(20, 4, 10_000);
+        // the burst is available at once, then one permit every 50ms
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0L, limiter.acquire());
+        }
+        long delay = limiter.acquire();
+        assertTrue("delay was " + delay, delay > 0L && delay <= 50L);
+        assertEquals(1L, limiter.getThrottledCount());
+
+        long start = System.nanoTime();
+        int permits = 4;
+        while (System.nanoTime() - start < SECONDS.toNanos(1)) {
+            long wait = limiter.acquire();
+            if (wait == 0L) {
+                permits++;
+            } else {
+                Thread.sleep(wait);
+            }
+        }
+        // 4 at once and 20 in the second which followed, give or take one for the timing
+        assertTrue("got " + permits + " permits", permits >= 22 && permits <= 25);
+    }
+
+    @Test(timeout = 10_000)
+    public void testFailuresBackOff() throws Exception {
+        CreationLimiter limiter = new CreationLimiter(0, 1, 500);
+        assertEquals(0L, limiter.acquire());
+
+        limiter.failure();
+        long first = limiter.acquire();
+        // jittered between half and all of the initial backoff of 250ms
+        assertTrue("delay was " + first, first >= 120L && first <= 250L);
+        // further failures while backing off do not push the deadline
+        limiter.failure();
+        assertTrue(limiter.acquire() <= first);
+
+        Thread.sleep(first);
+        assertEquals(0L, limiter.acquire());
+        limiter.failure();
+        long second = limiter.acquire();
+        assertTrue("delay was " + second, second >= 180L && second <= 375L);
+
+        // the delay is capped
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(limiter.acquire());
+            limiter.failure();
+        }
+        long capped = limiter.acquire();
+        assertTrue("delay was " + capped, capped <= 500L);
+
+        // a success resets the backoff for the next failure
+        Thread.sleep(capped);
+        limiter.success();
+        limiter.failure();
+        assertTrue(limiter.acquire() <= 250L);
+        assertTrue(limiter.getThrottledCount() >= 5L);
+    }
+
+    @Test(timeout = 10_000)
+    public void testBackoffAppliesOnTopOfRate() throws Exception {
+        CreationLimiter limiter = new CreationLimiter(1000, 10, 1_000);
+        limiter.failure();
+        long delay = limiter.acquire();
+        assertTrue("delay was " + delay, delay >= 120L);
+        Thread.sleep(delay);
+        assertEquals(0L, limiter.acquire());
+    }
+
+}
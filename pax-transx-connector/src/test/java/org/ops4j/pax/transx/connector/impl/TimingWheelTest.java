@@ -0,0 +1,118 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.impl;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 10L;
+
+    @Test(timeout = 10_000)
+    public void testTimersFireInDeadlineOrder() throws Exception {
+        TimingWheel wheel = new TimingWheel(TICK, MILLISECONDS, 16);
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        long start = System.nanoTime();
+        long[] firedAt = new long[4];
+        // the longest delays go around the wheel more than once
+        int[] delays = { 300, 50, 200, 120 };
+        for (int i = 0; i < delays.length; i++) {
+            final int index = i;
+            TimingWheel.Timer timer = wheel.newTimer(() -> {
+                firedAt[index] = System.nanoTime() - start;
+                fired.add(delays[index]);
+            });
+            wheel.schedule(timer, delays[i], MILLISECONDS);
+        }
+
+        runUntil(wheel, () -> fired.size() == delays.length);
+
+        assertEquals(Arrays.asList(50, 120, 200, 300), fired);
+        for (int i = 0; i < delays.length; i++) {
+            assertTrue("timer fired early", firedAt[i] >= MILLISECONDS.toNanos(delays[i]));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testCancelledTimerDoesNotFire() throws Exception {
+        TimingWheel wheel = new TimingWheel(TICK, MILLISECONDS, 16);
+        List<String> fired = new CopyOnWriteArrayList<>();
+        TimingWheel.Timer cancelled = wheel.newTimer(() -> fired.add("cancelled"));
+        TimingWheel.Timer kept = wheel.newTimer(() -> fired.add("kept"));
+        wheel.schedule(cancelled, 50, MILLISECONDS);
+        wheel.schedule(kept, 100, MILLISECONDS);
+        assertTrue(cancelled.isScheduled());
+
+        assertTrue(wheel.cancel(cancelled));
+        assertFalse(cancelled.isScheduled());
+        assertFalse(wheel.cancel(cancelled));
+
+        runUntil(wheel, () -> !fired.isEmpty());
+        assertEquals(Arrays.asList("kept"), fired);
+        assertFalse(kept.isScheduled());
+        assertFalse(wheel.cancel(kept));
+    }
+
+    @Test(timeout = 10_000)
+    public void testRescheduleReplacesDeadline() throws Exception {
+        TimingWheel wheel = new TimingWheel(TICK, MILLISECONDS, 16);
+        List<String> fired = new CopyOnWriteArrayList<>();
+        TimingWheel.Timer first = wheel.newTimer(() -> fired.add("first"));
+        TimingWheel.Timer second = wheel.newTimer(() -> fired.add("second"));
+        wheel.schedule(first, 50, MILLISECONDS);
+        wheel.schedule(second, 150, MILLISECONDS);
+        // pushed after the second one, it must fire only once
+        wheel.schedule(first, 300, MILLISECONDS);
+
+        runUntil(wheel, () -> fired.size() == 2);
+        Thread.sleep(100);
+        wheel.advance();
+        assertEquals(Arrays.asList("second", "first"), fired);
+    }
+
+    @Test(timeout = 10_000)
+    public void testClearCancelsAllTimers() throws Exception {
+        TimingWheel wheel = new TimingWheel(TICK, MILLISECONDS, 16);
+        List<String> fired = new CopyOnWriteArrayList<>();
+        TimingWheel.Timer timer = wheel.newTimer(() -> fired.add("timer"));
+        wheel.schedule(timer, 20, MILLISECONDS);
+        wheel.clear();
+        assertFalse(timer.isScheduled());
+
+        Thread.sleep(100);
+        wheel.advance();
+        assertTrue(fired.isEmpty());
+    }
+
+    private static void runUntil(TimingWheel wheel, BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            Thread.sleep(TICK);
+            wheel.advance();
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.metrics.dropwizard;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTracker;
+import org.ops4j.pax.transx.connector.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DropwizardMetricsTrackerTest {
+
+    private static final String PREFIX = "pool.0." + DropwizardMetricsTracker.METRIC_CATEGORY + ".";
+
+    @Test
+    public void testRecordsBorrows() {
+        MetricRegistry registry = new MetricRegistry();
+        PoolMetricsTracker tracker = new DropwizardMetricsTrackerFactory(registry).create("pool", "0", new FixedPoolStats());
+
+        for (int i = 0; i < 3; i++) {
+            tracker.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(2));
+            tracker.recordConnectionUsageMillis(10);
+        }
+        tracker.recordConnectionCreatedMillis(5);
+        tracker.recordConnectionTimeout();
+        tracker.recordConnectionEvicted();
+        tracker.recordConnectionCreationThrottled();
+
+        assertEquals(3L, registry.getTimers().get(PREFIX + "Wait").getCount());
+        assertEquals(3L, registry.getHistograms().get(PREFIX + "Usage").getCount());
+        assertEquals(1L, registry.getHistograms().get(PREFIX + "ConnectionCreation").getCount());
+        assertEquals(1L, registry.getMeters().get(PREFIX + "ConnectionTimeoutRate").getCount());
+        assertEquals(1L, registry.getMeters().get(PREFIX + "ConnectionEvictionRate").getCount());
+        assertEquals(1L, registry.getMeters().get(PREFIX + "ConnectionCreationThrottleRate").getCount());
+        assertEquals(4, registry.getGauges().get(PREFIX + "ActiveConnections").getValue());
+        assertEquals(6, registry.getGauges().get(PREFIX + "TotalConnections").getValue());
+    }
+
+    @Test
+    public void testCloseRemovesMetrics() {
+        MetricRegistry registry = new MetricRegistry();
+        PoolMetricsTracker tracker = new DropwizardMetricsTrackerFactory(registry).create("pool", "0", new FixedPoolStats());
+        assertTrue(registry.getNames().size() > 0);
+
+        tracker.close();
+        assertTrue(registry.getNames().isEmpty());
+    }
+
+    static class FixedPoolStats implements PoolStats {
+
+        @Override
+        public int getTotalConnections() {
+            return 6;
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return 2;
+        }
+
+        @Override
+        public int getActiveConnections() {
+            return 4;
+        }
+
+        @Override
+        public int getPendingThreads() {
+            return 1;
+        }
+
+        @Override
+        public int getMaxConnections() {
+            return 10;
+        }
+
+        @Override
+        public int getMinConnections() {
+            return 2;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.connector.metrics.micrometer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTracker;
+import org.ops4j.pax.transx.connector.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MicrometerMetricsTrackerTest {
+
+    private static final String PREFIX = MicrometerMetricsTracker.METRIC_NAME_PREFIX;
+
+    @Test
+    public void testRecordsBorrows() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        PoolMetricsTracker tracker = new MicrometerMetricsTrackerFactory(registry).create("pool", "0", new FixedPoolStats());
+
+        for (int i = 0; i < 3; i++) {
+            tracker.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(2));
+            tracker.recordConnectionUsageMillis(10);
+        }
+        tracker.recordConnectionCreatedMillis(5);
+        tracker.recordConnectionTimeout();
+        tracker.recordConnectionEvicted();
+        tracker.recordConnectionCreationThrottled();
+
+        Timer acquire = registry.find(PREFIX + ".acquire").tag("pool", "pool").tag("subpool", "0").timer();
+        assertEquals(3L, acquire.count());
+        assertEquals(6.0, acquire.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(3L, registry.find(PREFIX + ".usage").timer().count());
+        assertEquals(1L, registry.find(PREFIX + ".creation").timer().count());
+        assertEquals(1.0, registry.find(PREFIX + ".timeout").counter().count(), 0.0);
+        assertEquals(1.0, registry.find(PREFIX + ".evicted").counter().count(), 0.0);
+        assertEquals(1.0, registry.find(PREFIX + ".throttled").counter().count(), 0.0);
+        assertEquals(4.0, registry.find(PREFIX + ".active").gauge().value(), 0.0);
+        assertEquals(6.0, registry.find(PREFIX).gauge().value(), 0.0);
+    }
+
+    @Test
+    public void testCloseRemovesMeters() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        PoolMetricsTracker tracker = new MicrometerMetricsTrackerFactory(registry).create("pool", "0", new FixedPoolStats());
+        assertTrue(registry.getMeters().size() > 0);
+
+        tracker.close();
+        assertTrue(registry.getMeters().isEmpty());
+        assertNull(registry.find(PREFIX + ".acquire").timer());
+    }
+
+    static class FixedPoolStats implements PoolStats {
+
+        @Override
+        public int getTotalConnections() {
+            return 6;
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return 2;
+        }
+
+        @Override
+        public int getActiveConnections() {
+            return 4;
+        }
+
+        @Override
+        public int getPendingThreads() {
+            return 1;
+        }
+
+        @Override
+        public int getMaxConnections() {
+            return 10;
+        }
+
+        @Override
+        public int getMinConnections() {
+            return 2;
+        }
+    }
+
+}
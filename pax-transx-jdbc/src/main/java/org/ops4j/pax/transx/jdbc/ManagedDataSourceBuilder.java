@@ -15,7 +15,12 @@
 package org.ops4j.pax.transx.jdbc;
 
 import org.ops4j.pax.transx.connection.ExceptionSorter;
+import org.ops4j.pax.transx.connection.utils.UserPasswordConnectionRequestInfoImpl;
 import org.ops4j.pax.transx.connector.ConnectionManagerBuilder;
+import org.ops4j.pax.transx.connector.PoolEngine;
+import org.ops4j.pax.transx.connector.PoolRuntime;
+import org.ops4j.pax.transx.connector.SubjectSource;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTrackerFactory;
 import org.ops4j.pax.transx.jdbc.impl.AbstractJdbcManagedConnectionFactory;
 import org.ops4j.pax.transx.jdbc.impl.ConnectionPoolDataSourceMCF;
 import org.ops4j.pax.transx.jdbc.impl.LocalDataSourceMCF;
@@ -44,6 +49,11 @@ public class ManagedDataSourceBuilder {
     private boolean commitBeforeAutocommit;
     private int preparedStatementCacheSize = 0;
     private int transactionIsolationLevel = -1;
+    private int validationConcurrency = AbstractJdbcManagedConnectionFactory.DEFAULT_VALIDATION_CONCURRENCY;
+    private long validationBatchTimeout = 10_000L;
+    private String validationQuery;
+    private long validationTimeout = 5_000L;
+    private boolean recycleHandles;
     private AbstractJdbcManagedConnectionFactory<?, ?, ?> managedConnectionFactory;
 
     private ManagedDataSourceBuilder() {
@@ -99,6 +109,11 @@ public class ManagedDataSourceBuilder {
         return this;
     }
 
+    public ManagedDataSourceBuilder subjectSource(SubjectSource subjectSource) {
+        builder.subjectSource(subjectSource);
+        return this;
+    }
+
     public ManagedDataSourceBuilder minIdle(int minSize) {
         builder.minIdle(minSize);
         return this;
@@ -159,12 +174,202 @@ public class ManagedDataSourceBuilder {
         return this;
     }
 
+    public ManagedDataSourceBuilder poolEngine(PoolEngine.Factory poolEngine) {
+        builder.poolEngine(poolEngine);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder virtualThreads(boolean virtualThreads) {
+        builder.virtualThreads(virtualThreads);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder adaptiveSizing(boolean adaptiveSizing) {
+        builder.adaptiveSizing(adaptiveSizing);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder adaptiveWaitThreshold(long adaptiveWaitThresholdMs) {
+        builder.adaptiveWaitThreshold(adaptiveWaitThresholdMs);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder adaptiveWaitThreshold(long adaptiveWaitThreshold, TimeUnit unit) {
+        builder.adaptiveWaitThreshold(unit.toMillis(adaptiveWaitThreshold));
+        return this;
+    }
+
+    public ManagedDataSourceBuilder adaptiveWaitingThreshold(int adaptiveWaitingThreshold) {
+        builder.adaptiveWaitingThreshold(adaptiveWaitingThreshold);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder creationRate(int creationRate) {
+        builder.creationRate(creationRate);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder creationBurst(int creationBurst) {
+        builder.creationBurst(creationBurst);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder metricsTrackerFactory(PoolMetricsTrackerFactory metricsTrackerFactory) {
+        builder.metricsTrackerFactory(metricsTrackerFactory);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder registerMBean(boolean registerMBean) {
+        builder.registerMBean(registerMBean);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder leakDetectionThreshold(long leakDetectionThresholdMs) {
+        builder.leakDetectionThreshold(leakDetectionThresholdMs);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder leakDetectionThreshold(long leakDetectionThreshold, TimeUnit unit) {
+        builder.leakDetectionThreshold(unit.toMillis(leakDetectionThreshold));
+        return this;
+    }
+
+    public ManagedDataSourceBuilder leakDetectionSampleRate(double leakDetectionSampleRate) {
+        builder.leakDetectionSampleRate(leakDetectionSampleRate);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder leakReclaim(boolean leakReclaim) {
+        builder.leakReclaim(leakReclaim);
+        return this;
+    }
+
+    /**
+     * Validate idle connections in the background once they have not been used nor validated for this time.
+     * The connections due at each house keeping run are validated as a batch by the factory, see
+     * {@link #validationConcurrency(int)} and {@link #validationBatchTimeout(long)}.
+     */
+    public ManagedDataSourceBuilder keepaliveTime(long keepaliveTimeMs) {
+        builder.keepaliveTime(keepaliveTimeMs);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder keepaliveTime(long keepaliveTime, TimeUnit unit) {
+        builder.keepaliveTime(unit.toMillis(keepaliveTime));
+        return this;
+    }
+
+    public ManagedDataSourceBuilder maxTotalConnections(int maxTotalConnections) {
+        builder.maxTotalConnections(maxTotalConnections);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder maxSubPools(int maxSubPools) {
+        builder.maxSubPools(maxSubPools);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder subPoolIdleTimeout(long subPoolIdleTimeoutMs) {
+        builder.subPoolIdleTimeout(subPoolIdleTimeoutMs);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder subPoolIdleTimeout(long subPoolIdleTimeout, TimeUnit unit) {
+        builder.subPoolIdleTimeout(unit.toMillis(subPoolIdleTimeout));
+        return this;
+    }
+
+    public ManagedDataSourceBuilder poolRuntime(PoolRuntime poolRuntime) {
+        builder.poolRuntime(poolRuntime);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder deferredReset(boolean deferredReset) {
+        builder.deferredReset(deferredReset);
+        return this;
+    }
+
+    /**
+     * Query used to validate connections, instead of {@link java.sql.Connection#isValid(int)}.
+     */
+    public ManagedDataSourceBuilder validationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+        return this;
+    }
+
+    /**
+     * Maximum time to validate a connection, also used as network timeout while validating.  Defaults to 5000ms.
+     */
+    public ManagedDataSourceBuilder validationTimeout(long validationTimeoutMs) {
+        this.validationTimeout = validationTimeoutMs;
+        return this;
+    }
+
+    public ManagedDataSourceBuilder validationTimeout(long validationTimeout, TimeUnit unit) {
+        this.validationTimeout = unit.toMillis(validationTimeout);
+        return this;
+    }
+
+    /**
+     * Maximum number of connections validated in parallel by the factory.  Defaults to 8.
+     */
+    public ManagedDataSourceBuilder validationConcurrency(int validationConcurrency) {
+        this.validationConcurrency = validationConcurrency;
+        return this;
+    }
+
+    /**
+     * Time allowed to validate a batch of connections in parallel.  Defaults to 10000ms.
+     */
+    public ManagedDataSourceBuilder validationBatchTimeout(long validationBatchTimeoutMs) {
+        this.validationBatchTimeout = validationBatchTimeoutMs;
+        return this;
+    }
+
+    public ManagedDataSourceBuilder validationBatchTimeout(long validationBatchTimeout, TimeUnit unit) {
+        this.validationBatchTimeout = unit.toMillis(validationBatchTimeout);
+        return this;
+    }
+
+    /**
+     * Reuse the connection handles given to the application instead of creating one for each borrow.
+     * A connection must then not be used at all once closed, not even closed again, while the
+     * statements and metadata obtained from it are refused once it is handed out again.
+     * Defaults to false.
+     */
+    public ManagedDataSourceBuilder recycleHandles(boolean recycleHandles) {
+        this.recycleHandles = recycleHandles;
+        return this;
+    }
+
+    public ManagedDataSourceBuilder warmUp(boolean warmUp) {
+        builder.warmUp(warmUp);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder warmUpConcurrency(int warmUpConcurrency) {
+        builder.warmUpConcurrency(warmUpConcurrency);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder warmUpTimeout(long warmUpTimeoutMs) {
+        builder.warmUpTimeout(warmUpTimeoutMs);
+        return this;
+    }
+
+    public ManagedDataSourceBuilder warmUpTimeout(long warmUpTimeout, TimeUnit unit) {
+        builder.warmUpTimeout(unit.toMillis(warmUpTimeout));
+        return this;
+    }
+
     public DataSource build() throws Exception {
         if (dataSource == null) {
             throw new NullPointerException("dataSource must be set");
         }
         if (managedConnectionFactory == null) {
             managedConnectionFactory = create(dataSource);
+            // the connection manager pools connections for each subject and request info
+            managedConnectionFactory.setCredentialsMatchedByPool(true);
         }
         if (exceptionSorter != null) {
             managedConnectionFactory.setExceptionSorter(exceptionSorter);
@@ -174,7 +379,14 @@ public class ManagedDataSourceBuilder {
         managedConnectionFactory.setCommitBeforeAutocommit(commitBeforeAutocommit);
         managedConnectionFactory.setPreparedStatementCacheSize(preparedStatementCacheSize);
         managedConnectionFactory.setTransactionIsolationLevel(transactionIsolationLevel);
+        managedConnectionFactory.setValidationQuery(validationQuery);
+        managedConnectionFactory.setValidationTimeout(validationTimeout);
+        managedConnectionFactory.setValidationConcurrency(validationConcurrency);
+        managedConnectionFactory.setValidationBatchTimeout(validationBatchTimeout);
+        managedConnectionFactory.setRecycleHandles(recycleHandles);
         builder.managedConnectionFactory(managedConnectionFactory);
+        // DataSource.getConnection() without credentials
+        builder.warmUpRequestInfo(UserPasswordConnectionRequestInfoImpl.NULL_CRI);
         ConnectionManager cm = builder.build();
         return (DataSource) managedConnectionFactory.createConnectionFactory(cm);
     }
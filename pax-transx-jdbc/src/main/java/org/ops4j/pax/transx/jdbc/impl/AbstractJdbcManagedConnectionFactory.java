@@ -27,6 +27,7 @@ import javax.sql.CommonDataSource;
 import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractJdbcManagedConnectionFactory<
         MCF extends AbstractManagedConnectionFactory<MCF, MC, Connection, ConnectionHandle<MCF, MC>>,
@@ -35,14 +36,20 @@ public abstract class AbstractJdbcManagedConnectionFactory<
             extends AbstractManagedConnectionFactory<MCF, MC, Connection, ConnectionHandle<MCF, MC>>
             implements AutocommitSpecCompliant{
 
+    public static final int DEFAULT_VALIDATION_CONCURRENCY = 8;
+
     protected final T dataSource;
     protected boolean commitBeforeAutocommit = false;
     protected int preparedStatementCacheSize = 0;
     protected int transactionIsolationLevel = -1;
+    protected String validationQuery;
+    protected long validationTimeout = TimeUnit.SECONDS.toMillis(5);
 
     protected AbstractJdbcManagedConnectionFactory(T dataSource, ExceptionSorter exceptionSorter) {
         this.dataSource = dataSource;
         this.exceptionSorter = exceptionSorter;
+        // validating a connection is a round-trip to the database
+        this.validationConcurrency = DEFAULT_VALIDATION_CONCURRENCY;
     }
 
     @Override
@@ -84,6 +91,34 @@ public abstract class AbstractJdbcManagedConnectionFactory<
         this.preparedStatementCacheSize = preparedStatementCacheSize;
     }
 
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    /**
+     * Set the query used to validate connections.  When not set, connections are validated
+     * with {@link Connection#isValid(int)}.
+     *
+     * @param validationQuery the query, prepared once for each connection
+     */
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+    }
+
+    public long getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    /**
+     * Set the maximum time to validate a connection.  It is used both as the query timeout
+     * and as the network timeout of the connection while it is validated.
+     *
+     * @param validationTimeout the timeout in milliseconds, 0 for no timeout
+     */
+    public void setValidationTimeout(long validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
     protected Connection wrap(Connection connection) {
         if (preparedStatementCacheSize > 0) {
             return new ConnectionWrapper(connection, preparedStatementCacheSize);
@@ -66,8 +66,7 @@ public class ConnectionHandle<
         if (mc.isInXaTransaction()) {
             throw new SQLException("Can not commit within an XA transaction");
         }
-        Connection c = mc.getPhysicalConnection();
-        if (c.getAutoCommit()) {
+        if (getAutoCommit(mc)) {
             return;
         }
 
@@ -89,8 +88,7 @@ public class ConnectionHandle<
         if (mc.isInXaTransaction()) {
             throw new SQLException("Can not rollback within an XA transaction");
         }
-        Connection c = mc.getPhysicalConnection();
-        if (c.getAutoCommit()) {
+        if (getAutoCommit(mc)) {
             return;
         }
 
@@ -112,8 +110,7 @@ public class ConnectionHandle<
         if (mc.isInXaTransaction()) {
             throw new SQLException("Can not set autoCommit within an XA transaction");
         }
-        Connection c = mc.getPhysicalConnection();
-        if (autoCommit == c.getAutoCommit()) {
+        if (autoCommit == getAutoCommit(mc)) {
             // nothing to do
             return;
         }
@@ -137,7 +134,12 @@ public class ConnectionHandle<
     }
 
     public boolean getAutoCommit() throws SQLException {
-        return call(Connection::getAutoCommit);
+        MC mc = getManagedConnection();
+        if (mc.isInXaTransaction()) {
+            // the driver may switch autocommit off for the duration of the transaction branch
+            return call(Connection::getAutoCommit);
+        }
+        return getAutoCommit(mc);
     }
 
     public Statement createStatement() throws SQLException {
@@ -252,7 +254,7 @@ public class ConnectionHandle<
     }
 
     public void setCatalog(String catalog) throws SQLException {
-        execute(c -> c.setCatalog(catalog));
+        change(SessionState.CATALOG, c -> c.setCatalog(catalog));
     }
 
     public int getHoldability() throws SQLException {
@@ -260,7 +262,7 @@ public class ConnectionHandle<
     }
 
     public void setHoldability(int holdability) throws SQLException {
-        execute(c -> c.setHoldability(holdability));
+        change(SessionState.HOLDABILITY, c -> c.setHoldability(holdability));
     }
 
     @SuppressWarnings("all")
@@ -269,7 +271,7 @@ public class ConnectionHandle<
     }
 
     public void setTransactionIsolation(int level) throws SQLException {
-        execute(c -> c.setTransactionIsolation(level));
+        change(SessionState.ISOLATION, c -> c.setTransactionIsolation(level));
     }
 
     public Map<String, Class<?>> getTypeMap() throws SQLException {
@@ -277,7 +279,7 @@ public class ConnectionHandle<
     }
 
     public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
-        execute(c -> c.setTypeMap(map));
+        change(SessionState.TYPE_MAP, c -> c.setTypeMap(map));
     }
 
     public SQLWarning getWarnings() throws SQLException {
@@ -293,7 +295,7 @@ public class ConnectionHandle<
     }
 
     public void setReadOnly(boolean readOnly) throws SQLException {
-        execute(c -> c.setReadOnly(readOnly));
+        change(SessionState.READ_ONLY, c -> c.setReadOnly(readOnly));
     }
 
     public Savepoint setSavepoint() throws SQLException {
@@ -319,7 +321,7 @@ public class ConnectionHandle<
 
     @Override
     public void setSchema(String schema) throws SQLException {
-        execute(c -> c.setSchema(schema));
+        change(SessionState.SCHEMA, c -> c.setSchema(schema));
     }
 
     @Override
@@ -334,7 +336,7 @@ public class ConnectionHandle<
 
     @Override
     public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
-        execute(c -> c.setNetworkTimeout(executor, milliseconds));
+        change(SessionState.NETWORK_TIMEOUT, c -> c.setNetworkTimeout(executor, milliseconds));
     }
 
     @Override
@@ -347,7 +349,14 @@ public class ConnectionHandle<
         if (tClass.isInstance(this)) {
             return tClass.cast(this);
         }
-        return call(c -> c.unwrap(tClass));
+        // the application may change anything through the driver connection
+        SessionState state = getSessionState();
+        return call(c -> {
+            if (state != null) {
+                state.bypass(c);
+            }
+            return c.unwrap(tClass);
+        });
     }
 
     @Override
@@ -358,6 +367,29 @@ public class ConnectionHandle<
         return call(c -> c.isWrapperFor(aClass));
     }
 
+    /**
+     * Change a session property of the connection, which is set back when the connection returns to the pool.
+     */
+    private void change(int property, Runnable<Connection> cb) throws SQLException {
+        SessionState state = getSessionState();
+        execute(c -> {
+            if (state != null) {
+                state.changing(property, c);
+            }
+            cb.run(c);
+        });
+    }
+
+    private SessionState getSessionState() throws SQLException {
+        MC mc = getManagedConnection();
+        return mc instanceof SessionState.Holder ? ((SessionState.Holder) mc).getSessionState() : null;
+    }
+
+    private boolean getAutoCommit(MC mc) throws SQLException {
+        return call(c -> mc instanceof SessionState.Holder
+                ? ((SessionState.Holder) mc).getSessionState().getAutoCommit(c) : c.getAutoCommit());
+    }
+
     private Statement wrapStatement(Statement s) {
         return Wrappers.wrap(Statement.class, this, s);
     }
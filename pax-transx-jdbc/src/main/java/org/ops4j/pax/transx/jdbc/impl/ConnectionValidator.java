@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.ops4j.pax.transx.jdbc.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Validates a physical connection, either with {@link Connection#isValid(int)} or by running
+ * the validation query of the factory through a statement prepared once for the connection.
+ *
+ * The network timeout of the connection is lowered while validating, so that a connection
+ * whose socket hangs is reported as broken after the validation timeout instead of the
+ * TCP timeout of the operating system.
+ */
+final class ConnectionValidator {
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private final String validationQuery;
+    private final int validationTimeout;
+    // not a monitor, validating is I/O and must not pin the carrier of a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private PreparedStatement statement;
+    private boolean networkTimeoutSupported = true;
+
+    ConnectionValidator(AbstractJdbcManagedConnectionFactory<?, ?, ?> mcf) {
+        this.validationQuery = mcf.getValidationQuery();
+        this.validationTimeout = (int) Math.min(Integer.MAX_VALUE, Math.max(0L, mcf.getValidationTimeout()));
+    }
+
+    boolean isValid(Connection connection) {
+        lock.lock();
+        try {
+            return doIsValid(connection);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean doIsValid(Connection connection) {
+        final int previousTimeout;
+        try {
+            previousTimeout = setNetworkTimeout(connection, validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+        boolean valid;
+        try {
+            final int seconds = validationTimeout > 0 ? (int) Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(validationTimeout + 999L)) : 0;
+            if (validationQuery == null) {
+                valid = connection.isValid(seconds);
+            } else {
+                if (statement == null) {
+                    statement = connection.prepareStatement(validationQuery);
+                    statement.setQueryTimeout(seconds);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    valid = true;
+                }
+            }
+        } catch (SQLException e) {
+            valid = false;
+        }
+        try {
+            setNetworkTimeout(connection, previousTimeout);
+        } catch (SQLException e) {
+            valid = false;
+        }
+        return valid;
+    }
+
+    /**
+     * Set the network timeout of the connection if the driver supports it.
+     *
+     * @return the previous network timeout
+     */
+    private int setNetworkTimeout(Connection connection, int timeout) throws SQLException {
+        if (!networkTimeoutSupported || validationTimeout == 0) {
+            return 0;
+        }
+        try {
+            final int previous = connection.getNetworkTimeout();
+            if (previous != timeout) {
+                connection.setNetworkTimeout(DIRECT, timeout);
+            }
+            return previous;
+        } catch (SQLFeatureNotSupportedException | AbstractMethodError | UnsupportedOperationException e) {
+            // pre JDBC 4.1 drivers, only the query timeout applies
+            networkTimeoutSupported = false;
+            return 0;
+        }
+    }
+
+}
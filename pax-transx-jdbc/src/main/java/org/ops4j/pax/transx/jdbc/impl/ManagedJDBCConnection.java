@@ -24,15 +24,19 @@ import javax.resource.spi.LocalTransactionException;
 import javax.resource.spi.ResourceAdapterInternalException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.Executor;
 
 /**
  * Implementation of ManagedConnection that manages a physical JDBC connection.
  */
-public class ManagedJDBCConnection extends AbstractManagedConnection<LocalDataSourceMCF, ManagedJDBCConnection, Connection, ConnectionHandle<LocalDataSourceMCF, ManagedJDBCConnection>> {
+public class ManagedJDBCConnection extends AbstractManagedConnection<LocalDataSourceMCF, ManagedJDBCConnection, Connection, ConnectionHandle<LocalDataSourceMCF, ManagedJDBCConnection>>
+        implements SessionState.Holder {
 
     private final Connection physicalConnection;
     private final LocalTransactionImpl localTx;
     private final LocalTransactionImpl localClientTx;
+    private final ConnectionValidator validator;
+    private final SessionState sessionState = new SessionState();
 
     /**
      * Constructor for initializing the manager.
@@ -44,6 +48,7 @@ public class ManagedJDBCConnection extends AbstractManagedConnection<LocalDataSo
      */
     public ManagedJDBCConnection(LocalDataSourceMCF mcf, Connection physicalConnection, CredentialExtractor credentialExtractor, ExceptionSorter exceptionSorter) {
         super(mcf, credentialExtractor, exceptionSorter);
+        this.validator = new ConnectionValidator(mcf);
         this.physicalConnection = physicalConnection;
         localTx = new LocalTransactionImpl(true);
         localClientTx = new LocalTransactionImpl(false);
@@ -62,21 +67,28 @@ public class ManagedJDBCConnection extends AbstractManagedConnection<LocalDataSo
         return localTx;
     }
 
+    @Override
+    public SessionState getSessionState() {
+        return sessionState;
+    }
+
     @Override
     protected boolean isValid() {
+        return validator.isValid(getPhysicalConnection());
+    }
+
+    @Override
+    protected void abort(Executor executor) {
         try {
-            if (getPhysicalConnection().isValid(0)) {
-                return true;
-            }
-        } catch (SQLException e) {
-            // no-op
+            getPhysicalConnection().abort(executor);
+        } catch (SQLException | AbstractMethodError e) {
+            // pre JDBC 4.1 drivers, the validating thread is only interrupted
         }
-        return false;
     }
 
     protected void localTransactionStart(boolean isSPI) throws ResourceException {
         try {
-            getPhysicalConnection().setAutoCommit(false);
+            sessionState.setAutoCommit(getPhysicalConnection(), false);
         } catch (SQLException e) {
             throw new LocalTransactionException("Unable to disable autoCommit", e);
         }
@@ -88,7 +100,7 @@ public class ManagedJDBCConnection extends AbstractManagedConnection<LocalDataSo
             if (mcf.isCommitBeforeAutocommit()) {
                 getPhysicalConnection().commit();
             }
-            getPhysicalConnection().setAutoCommit(true);
+            sessionState.setAutoCommit(getPhysicalConnection(), true);
         } catch (SQLException e) {
             try {
                 getPhysicalConnection().rollback();
@@ -110,7 +122,7 @@ public class ManagedJDBCConnection extends AbstractManagedConnection<LocalDataSo
         }
         super.localTransactionRollback(isSPI);
         try {
-            getPhysicalConnection().setAutoCommit(true);
+            sessionState.setAutoCommit(getPhysicalConnection(), true);
         } catch (SQLException e) {
             throw new ResourceAdapterInternalException("Unable to enable autoCommit after rollback", e);
         }
@@ -119,12 +131,9 @@ public class ManagedJDBCConnection extends AbstractManagedConnection<LocalDataSo
 	public void cleanup() throws ResourceException {
         super.cleanup();
         try {
-            //TODO reset tx isolation level
-            if (!getPhysicalConnection().getAutoCommit()) {
-                getPhysicalConnection().setAutoCommit(true);
-            }
+            sessionState.reset(getPhysicalConnection());
         } catch (SQLException e) {
-            throw new ResourceException("Could not reset autocommit when returning to pool", e);
+            throw new ResourceException("Could not reset connection when returning to pool", e);
         }
     }
     
@@ -28,15 +28,19 @@ import javax.sql.PooledConnection;
 import java.sql.Connection;
 import java.sql.SQLException;
 
-public class ManagedPooledConnection extends AbstractManagedConnection<ConnectionPoolDataSourceMCF, ManagedPooledConnection, Connection, ConnectionHandle<ConnectionPoolDataSourceMCF, ManagedPooledConnection>> {
+public class ManagedPooledConnection extends AbstractManagedConnection<ConnectionPoolDataSourceMCF, ManagedPooledConnection, Connection, ConnectionHandle<ConnectionPoolDataSourceMCF, ManagedPooledConnection>>
+        implements SessionState.Holder {
 
     private final LocalTransactionImpl localTx;
     private final LocalTransactionImpl localClientTx;
     private final Connection connection;
     private final PooledConnection pooledConnection;
+    private final ConnectionValidator validator;
+    private final SessionState sessionState = new SessionState();
 
     public ManagedPooledConnection(ConnectionPoolDataSourceMCF mcf, PooledConnection pooledConnection, Connection connection, CredentialExtractor credentialExtractor, ExceptionSorter exceptionSorter) throws SQLException {
         super(mcf, credentialExtractor, exceptionSorter);
+        this.validator = new ConnectionValidator(mcf);
         this.connection =  connection;
         this.pooledConnection = pooledConnection;
         pooledConnection.addConnectionEventListener(new ConnectionEventListener() {
@@ -68,7 +72,7 @@ public class ManagedPooledConnection extends AbstractManagedConnection<Connectio
 
 	protected void localTransactionStart(boolean isSPI) throws ResourceException {
         try {
-            connection.setAutoCommit(false);
+            sessionState.setAutoCommit(connection, false);
         } catch (SQLException e) {
             throw new LocalTransactionException("Unable to disable autoCommit", e);
         }
@@ -83,7 +87,7 @@ public class ManagedPooledConnection extends AbstractManagedConnection<Connectio
             if (mcf.isCommitBeforeAutocommit()) {
                 connection.commit();
             }
-            connection.setAutoCommit(true);
+            sessionState.setAutoCommit(connection, true);
         } catch (SQLException e) {
             try {
                 connection.rollback();
@@ -105,33 +109,28 @@ public class ManagedPooledConnection extends AbstractManagedConnection<Connectio
         }
         super.localTransactionRollback(isSPI);
         try {
-            connection.setAutoCommit(true);
+            sessionState.setAutoCommit(connection, true);
         } catch (SQLException e) {
             throw new ResourceAdapterInternalException("Unable to enable autoCommit after rollback", e);
         }
     }
 
+    @Override
+    public SessionState getSessionState() {
+        return sessionState;
+    }
+
     @Override
     protected boolean isValid() {
-        try {
-            if (getPhysicalConnection().isValid(0)) {
-                return true;
-            }
-        } catch (SQLException e) {
-            // no-op
-        }
-        return false;
+        return validator.isValid(getPhysicalConnection());
     }
 
     public void cleanup() throws ResourceException {
         super.cleanup();
         try {
-            //TODO reset tx isolation level
-            if (!connection.getAutoCommit()) {
-                connection.setAutoCommit(true);
-            }
+            sessionState.reset(connection);
         } catch (SQLException e) {
-            throw new ResourceException("Could not reset autocommit when returning to pool", e);
+            throw new ResourceException("Could not reset connection when returning to pool", e);
         }
     }
 
@@ -29,15 +29,19 @@ import javax.transaction.xa.XAResource;
 import java.sql.Connection;
 import java.sql.SQLException;
 
-public class ManagedXAConnection extends AbstractManagedConnection<XADataSourceMCF, ManagedXAConnection, Connection, ConnectionHandle<XADataSourceMCF, ManagedXAConnection>> {
+public class ManagedXAConnection extends AbstractManagedConnection<XADataSourceMCF, ManagedXAConnection, Connection, ConnectionHandle<XADataSourceMCF, ManagedXAConnection>>
+        implements SessionState.Holder {
 
     private final LocalTransactionImpl localTx;
     private final LocalTransactionImpl localClientTx;
     private final Connection connection;
     private final XAConnection xaConnection;
+    private final ConnectionValidator validator;
+    private final SessionState sessionState = new SessionState();
 
     public ManagedXAConnection(XADataSourceMCF mcf, XAConnection xaConnection, XAResource xaResource, Connection connection, CredentialExtractor credentialExtractor, ExceptionSorter exceptionSorter) {
         super(mcf, credentialExtractor, exceptionSorter);
+        this.validator = new ConnectionValidator(mcf);
         this.connection = connection;
         this.xaConnection = xaConnection;
         this.xaResource = xaResource;
@@ -70,7 +74,7 @@ public class ManagedXAConnection extends AbstractManagedConnection<XADataSourceM
 
     protected void localTransactionStart(boolean isSPI) throws ResourceException {
         try {
-            connection.setAutoCommit(false);
+            sessionState.setAutoCommit(connection, false);
         } catch (SQLException e) {
             throw new LocalTransactionException("Unable to disable autoCommit", e);
         }
@@ -85,7 +89,7 @@ public class ManagedXAConnection extends AbstractManagedConnection<XADataSourceM
             if (mcf.isCommitBeforeAutocommit()) {
                 connection.commit();
             }
-            connection.setAutoCommit(true);
+            sessionState.setAutoCommit(connection, true);
         } catch (SQLException e) {
             try {
                 connection.rollback();
@@ -107,33 +111,28 @@ public class ManagedXAConnection extends AbstractManagedConnection<XADataSourceM
         }
         super.localTransactionRollback(isSPI);
         try {
-            connection.setAutoCommit(true);
+            sessionState.setAutoCommit(connection, true);
         } catch (SQLException e) {
             throw new ResourceAdapterInternalException("Unable to enable autoCommit after rollback", e);
         }
     }
 
+    @Override
+    public SessionState getSessionState() {
+        return sessionState;
+    }
+
     @Override
     protected boolean isValid() {
-        try {
-            if (connection.isValid(0)) {
-                return true;
-            }
-        } catch (SQLException e) {
-            // no-op
-        }
-        return false;
+        return validator.isValid(connection);
     }
 
     public void cleanup() throws ResourceException {
         super.cleanup();
         try {
-            //TODO reset tx isolation level
-            if (!connection.getAutoCommit()) {
-                connection.setAutoCommit(true);
-            }
+            sessionState.reset(connection);
         } catch (SQLException e) {
-            throw new ResourceException("Could not reset autocommit when returning to pool", e);
+            throw new ResourceException("Could not reset connection when returning to pool", e);
         }
     }
 
@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.ops4j.pax.transx.jdbc.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * The session properties of a physical connection changed by the application.
+ *
+ * The value of a property is remembered the first time it is changed, and the changed
+ * properties are set back to these values when the connection returns to the pool, so that
+ * a connection which has not been altered is given back without any call to the driver.
+ *
+ * The current autocommit mode is also cached once read or set, so that reading it or setting
+ * it to the value it already has does not go to the driver either.  The other properties are
+ * not cached, as statements can change them behind our back (SET SCHEMA, USE ...).  The cache
+ * is dropped while the application holds the driver connection, for the same reason.
+ */
+final class SessionState {
+
+    /**
+     * A managed connection whose session properties are tracked.
+     */
+    interface Holder {
+        SessionState getSessionState();
+    }
+
+    static final int AUTOCOMMIT = 1;
+    static final int ISOLATION = 1 << 1;
+    static final int READ_ONLY = 1 << 2;
+    static final int CATALOG = 1 << 3;
+    static final int SCHEMA = 1 << 4;
+    static final int NETWORK_TIMEOUT = 1 << 5;
+    static final int HOLDABILITY = 1 << 6;
+    static final int TYPE_MAP = 1 << 7;
+    static final int ALL = (1 << 8) - 1;
+
+    private static final Executor DIRECT = Runnable::run;
+
+    // the autocommit mode of a new connection is not known, so it is checked on the first return
+    private int dirty = AUTOCOMMIT;
+    private int remembered;
+    private int isolation;
+    private boolean readOnly;
+    private String catalog;
+    private String schema;
+    private int networkTimeout;
+    private int holdability;
+    private Map<String, Class<?>> typeMap;
+
+    // whether the current autocommit mode is cached
+    private boolean known;
+    private boolean bypassed;
+    private boolean currentAutoCommit;
+
+    /**
+     * Called before the application changes the given properties of the connection.
+     */
+    void changing(int properties, Connection connection) throws SQLException {
+        final int missing = properties & ~remembered & ~AUTOCOMMIT;
+        if (missing != 0) {
+            remember(missing, connection);
+        }
+        dirty |= properties;
+    }
+
+    /**
+     * Called when the application gets hold of the driver connection.
+     */
+    void bypass(Connection connection) throws SQLException {
+        changing(ALL, connection);
+        known = false;
+        bypassed = true;
+    }
+
+    boolean getAutoCommit(Connection connection) throws SQLException {
+        if (!known) {
+            final boolean autoCommit = connection.getAutoCommit();
+            if (bypassed) {
+                return autoCommit;
+            }
+            currentAutoCommit = autoCommit;
+            known = true;
+        }
+        return currentAutoCommit;
+    }
+
+    void setAutoCommit(Connection connection, boolean autoCommit) throws SQLException {
+        if (known && currentAutoCommit == autoCommit) {
+            return;
+        }
+        if (!autoCommit) {
+            dirty |= AUTOCOMMIT;
+        }
+        known = false;
+        connection.setAutoCommit(autoCommit);
+        currentAutoCommit = autoCommit;
+        known = !bypassed;
+    }
+
+    /**
+     * Set the changed properties back to their initial values, autocommit being always enabled.
+     */
+    void reset(Connection connection) throws SQLException {
+        final int dirty = this.dirty & (remembered | AUTOCOMMIT);
+        if (dirty == 0) {
+            return;
+        }
+        bypassed = false;
+        if ((dirty & AUTOCOMMIT) != 0) {
+            setAutoCommit(connection, true);
+        }
+        if ((dirty & ISOLATION) != 0) {
+            connection.setTransactionIsolation(isolation);
+        }
+        if ((dirty & READ_ONLY) != 0) {
+            connection.setReadOnly(readOnly);
+        }
+        if ((dirty & CATALOG) != 0) {
+            connection.setCatalog(catalog);
+        }
+        if ((dirty & SCHEMA) != 0) {
+            connection.setSchema(schema);
+        }
+        if ((dirty & NETWORK_TIMEOUT) != 0) {
+            connection.setNetworkTimeout(DIRECT, networkTimeout);
+        }
+        if ((dirty & HOLDABILITY) != 0) {
+            connection.setHoldability(holdability);
+        }
+        if ((dirty & TYPE_MAP) != 0) {
+            connection.setTypeMap(typeMap);
+        }
+        // setting autocommit back may have marked it again
+        this.dirty = 0;
+    }
+
+    private void remember(int properties, Connection connection) throws SQLException {
+        for (int property = ISOLATION; property <= TYPE_MAP; property <<= 1) {
+            if ((properties & property) == 0) {
+                continue;
+            }
+            try {
+                switch (property) {
+                    case ISOLATION:
+                        isolation = connection.getTransactionIsolation();
+                        break;
+                    case READ_ONLY:
+                        readOnly = connection.isReadOnly();
+                        break;
+                    case CATALOG:
+                        catalog = connection.getCatalog();
+                        break;
+                    case SCHEMA:
+                        schema = connection.getSchema();
+                        break;
+                    case NETWORK_TIMEOUT:
+                        networkTimeout = connection.getNetworkTimeout();
+                        break;
+                    case HOLDABILITY:
+                        holdability = connection.getHoldability();
+                        break;
+                    case TYPE_MAP:
+                        typeMap = connection.getTypeMap();
+                        break;
+                }
+                remembered |= property;
+            } catch (SQLFeatureNotSupportedException | AbstractMethodError | UnsupportedOperationException e) {
+                // the driver does not support this property, so the application cannot change it either
+            }
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ import org.ops4j.pax.transx.connection.utils.SimpleConnectionManager;
 import org.ops4j.pax.transx.connection.utils.UserPasswordConnectionRequestInfo;
 import org.ops4j.pax.transx.connection.utils.UserPasswordConnectionRequestInfoImpl;
 import org.ops4j.pax.transx.connection.utils.UserPasswordManagedConnectionFactory;
+import org.ops4j.pax.transx.connector.AsyncConnectionManager;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.ConnectionManager;
@@ -27,6 +28,9 @@ import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -63,14 +67,66 @@ public class TransxDataSource implements javax.sql.DataSource, AutoCloseable {
         try {
             return (Connection) cm.allocateConnection(mcf, cri);
         } catch (ResourceException e) {
-            LOGGER.log(Level.INFO, e.getMessage(), e);
-            //Failed to allocate!
-            if (e.getCause() instanceof SQLException) {
-                throw (SQLException) e.getCause();
-            } else {
-                throw new SQLException(e);
+            throw toSQLException(e);
+        }
+    }
+
+    /**
+     * Obtain a connection without blocking the calling thread while waiting for the pool.
+     * If the connection manager does not support it, the connection is allocated synchronously.
+     * Cancelling the returned stage gives the connection back to the pool.
+     */
+    public CompletionStage<Connection> getConnectionAsync() {
+        return getConnectionAsync(UserPasswordConnectionRequestInfoImpl.NULL_CRI);
+    }
+
+    public CompletionStage<Connection> getConnectionAsync(String user, String password) {
+        return getConnectionAsync(new UserPasswordConnectionRequestInfoImpl(user, password));
+    }
+
+    private CompletionStage<Connection> getConnectionAsync(UserPasswordConnectionRequestInfo cri) {
+        CompletableFuture<Connection> future = new CompletableFuture<>();
+        if (cm instanceof AsyncConnectionManager) {
+            CompletableFuture<Object> allocation = ((AsyncConnectionManager) cm).allocateConnectionAsync(mcf, cri).toCompletableFuture();
+            future.whenComplete((c, t) -> {
+                if (future.isCancelled()) {
+                    allocation.cancel(false);
+                }
+            });
+            allocation.whenComplete((c, t) -> {
+                if (t != null) {
+                    Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                    future.completeExceptionally(cause instanceof ResourceException ? toSQLException((ResourceException) cause) : cause);
+                } else if (!future.complete((Connection) c)) {
+                    closeQuietly((Connection) c);
+                }
+            });
+        } else {
+            try {
+                future.complete(getConnection(cri));
+            } catch (SQLException e) {
+                future.completeExceptionally(e);
             }
         }
+        return future;
+    }
+
+    private static SQLException toSQLException(ResourceException e) {
+        LOGGER.log(Level.INFO, e.getMessage(), e);
+        //Failed to allocate!
+        if (e.getCause() instanceof SQLException) {
+            return (SQLException) e.getCause();
+        } else {
+            return new SQLException(e);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing connection", e);
+        }
     }
 
     public int getLoginTimeout() throws SQLException {
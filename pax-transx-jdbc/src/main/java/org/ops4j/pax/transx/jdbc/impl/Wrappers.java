@@ -8,6 +8,7 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Wrapper;
 import java.util.Arrays;
@@ -38,7 +39,13 @@ final class Wrappers {
         if (h == null) {
             return null;
         }
+        final int generation = c.getGeneration();
         InvocationHandler ih = (proxy, method, args) -> {
+            if (c.getGeneration() != generation
+                    && method.getDeclaringClass() != Object.class && !method.getName().equals("close")) {
+                // the handle has been recycled, and now belongs to another borrower
+                throw new SQLException("Connection has been closed");
+            }
             try {
                 for (InvocationHandler sih : subHandlers) {
                     Object o = sih.invoke(proxy, method, args);
@@ -0,0 +1,75 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.jdbc.stubs.CountingDataSource;
+
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveSizingTest {
+
+    @Test(timeout = 30_000)
+    public void testPoolFollowsDemand() throws Exception {
+        CountingDataSource stub = new CountingDataSource();
+        DataSource ds = ManagedDataSourceBuilder.builder()
+                .name("adaptive")
+                .dataSource(stub)
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .adaptiveSizing(true)
+                .maxPoolSize(10)
+                .houseKeepingPeriod(200)
+                .connectionTimeout(5_000)
+                .build();
+        try {
+            // nothing is opened before there is any demand
+            Thread.sleep(500);
+            assertEquals(0, stub.getOpenConnections());
+
+            List<Connection> connections = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                connections.add(ds.getConnection());
+            }
+            // spare connections are kept above the sustained demand
+            await(() -> stub.getOpenConnections() >= 5);
+            assertTrue(stub.getOpenConnections() <= 10);
+
+            for (Connection con : connections) {
+                con.close();
+            }
+            // and given back once the demand is gone
+            await(() -> stub.getOpenConnections() <= 1);
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            Thread.sleep(50);
+        }
+    }
+
+}
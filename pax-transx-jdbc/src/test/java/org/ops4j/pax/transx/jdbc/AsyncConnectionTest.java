@@ -0,0 +1,183 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.ops4j.pax.transx.connector.PoolEngine;
+import org.ops4j.pax.transx.connector.PoolEngines;
+import org.ops4j.pax.transx.connector.PoolMXBean;
+import org.ops4j.pax.transx.jdbc.impl.TransxDataSource;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(Parameterized.class)
+public class AsyncConnectionTest {
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] {
+                { "BAG", PoolEngines.BAG },
+                { "STRIPED", PoolEngines.STRIPED },
+                { "FIFO", PoolEngines.FIFO },
+        });
+    }
+
+    private final String engineName;
+    private final PoolEngine.Factory engine;
+
+    public AsyncConnectionTest(String engineName, PoolEngine.Factory engine) {
+        this.engineName = engineName;
+        this.engine = engine;
+    }
+
+    @Test(timeout = 30_000)
+    public void testBorrowFromExhaustedPool() throws Exception {
+        String name = "async-exhausted-" + engineName;
+        TransxDataSource ds = createDataSource(name, 5_000);
+        try {
+            PoolMXBean pool = getPoolMXBean(name);
+            Connection first = ds.getConnection();
+
+            CompletableFuture<Connection> second = ds.getConnectionAsync().toCompletableFuture();
+            Thread.sleep(200);
+            assertFalse(second.isDone());
+            assertEquals(1, pool.getThreadsAwaitingConnection());
+
+            first.close();
+            second.get(5, TimeUnit.SECONDS).close();
+            assertEquals(1, pool.getTotalConnections());
+            assertEquals(0, pool.getThreadsAwaitingConnection());
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testBorrowTimesOut() throws Exception {
+        String name = "async-timeout-" + engineName;
+        TransxDataSource ds = createDataSource(name, 500);
+        try {
+            PoolMXBean pool = getPoolMXBean(name);
+            try (Connection first = ds.getConnection()) {
+                CompletableFuture<Connection> second = ds.getConnectionAsync().toCompletableFuture();
+                try {
+                    second.get(5, TimeUnit.SECONDS);
+                    fail("Expected the allocation to time out");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof SQLException);
+                }
+                assertEquals(0, pool.getThreadsAwaitingConnection());
+            }
+            // the pool is still usable
+            ds.getConnectionAsync().toCompletableFuture().get(5, TimeUnit.SECONDS).close();
+            assertEquals(1, pool.getIdleConnections());
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testCancelWhileWaiting() throws Exception {
+        String name = "async-cancel-" + engineName;
+        TransxDataSource ds = createDataSource(name, 5_000);
+        try {
+            PoolMXBean pool = getPoolMXBean(name);
+            Connection first = ds.getConnection();
+            CompletableFuture<Connection> second = ds.getConnectionAsync().toCompletableFuture();
+            Thread.sleep(200);
+            assertTrue(second.cancel(false));
+
+            // the connection given back is not handed to the cancelled request
+            first.close();
+            assertEquals(1, pool.getIdleConnections());
+            assertEquals(0, pool.getThreadsAwaitingConnection());
+            ds.getConnection().close();
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testCancelAfterBorrowReturnsConnection() throws Exception {
+        String name = "async-cancel-late-" + engineName;
+        TransxDataSource ds = createDataSource(name, 5_000);
+        try {
+            PoolMXBean pool = getPoolMXBean(name);
+            for (int i = 0; i < 100; i++) {
+                CompletableFuture<Connection> future = ds.getConnectionAsync().toCompletableFuture();
+                // races with the completion of the allocation on the async executor
+                if (!future.cancel(false)) {
+                    future.get().close();
+                }
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (pool.getActiveConnections() > 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+                assertEquals(0, pool.getActiveConnections());
+                assertEquals(1, pool.getIdleConnections());
+            }
+            assertEquals(1, pool.getTotalConnections());
+        } finally {
+            ds.close();
+        }
+    }
+
+    private TransxDataSource createDataSource(String name, long connectionTimeout) throws Exception {
+        return (TransxDataSource) ManagedDataSourceBuilder.builder()
+                .name(name)
+                .dataSource(new StubDataSource())
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .poolEngine(engine)
+                .minIdle(0)
+                .maxPoolSize(1)
+                .connectionTimeout(connectionTimeout)
+                .registerMBean(true)
+                .build();
+    }
+
+    private static PoolMXBean getPoolMXBean(String name) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : server.queryNames(new ObjectName("org.ops4j.pax.transx:type=Pool,*"), null)) {
+            PoolMXBean pool = JMX.newMXBeanProxy(server, objectName, PoolMXBean.class);
+            if (pool.getPoolName().endsWith("-" + name)) {
+                return pool;
+            }
+        }
+        throw new IllegalStateException("No pool named " + name);
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.connection.utils.UserPasswordConnectionRequestInfoImpl;
+import org.ops4j.pax.transx.jdbc.impl.LocalDataSourceMCF;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.resource.spi.SecurityException;
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.resource.spi.security.PasswordCredential;
+import javax.security.auth.Subject;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class CredentialsTest {
+
+    @Test(timeout = 30_000)
+    public void testDifferentSubjectIsRejected() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        LocalDataSourceMCF mcf = new LocalDataSourceMCF(stub);
+        Subject alice = subject(mcf, "alice");
+        Subject bob = subject(mcf, "bob");
+        ManagedConnection mc = mcf.createManagedConnection(alice, UserPasswordConnectionRequestInfoImpl.NULL_CRI);
+        try {
+            // the factory is not told that a pool routes the requests, so the credentials are checked
+            assertFalse(mcf.isCredentialsMatchedByPool());
+            ((Connection) mc.getConnection(alice, UserPasswordConnectionRequestInfoImpl.NULL_CRI)).close();
+            try {
+                mc.getConnection(bob, UserPasswordConnectionRequestInfoImpl.NULL_CRI);
+                fail("Expected the connection of another user to be refused");
+            } catch (SecurityException e) {
+                // expected
+            }
+        } finally {
+            mc.destroy();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testSubjectsArePooledSeparately() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        // the factory built by the data source is equal to this one, as it wraps the same data source
+        LocalDataSourceMCF mcf = new LocalDataSourceMCF(stub);
+        Subject alice = subject(mcf, "alice");
+        Subject bob = subject(mcf, "bob");
+        AtomicReference<Subject> current = new AtomicReference<>(alice);
+        DataSource ds = ManagedDataSourceBuilder.builder()
+                .dataSource(stub)
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(0)
+                .maxPoolSize(2)
+                .connectionTimeout(5_000)
+                .subjectSource(current::get)
+                .build();
+        try {
+            ds.getConnection().close();
+            assertEquals(1, stub.getConnections().size());
+
+            // the pool does not hand out the connection opened for alice when bob asks for one
+            current.set(bob);
+            ds.getConnection().close();
+            assertEquals(2, stub.getConnections().size());
+
+            current.set(alice);
+            ds.getConnection().close();
+            assertEquals(2, stub.getConnections().size());
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    private static Subject subject(ManagedConnectionFactory mcf, String userName) {
+        PasswordCredential credential = new PasswordCredential(userName, new char[0]);
+        credential.setManagedConnectionFactory(mcf);
+        Subject subject = new Subject();
+        subject.getPrivateCredentials().add(credential);
+        return subject;
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.connector.PoolMXBean;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertTrue;
+
+public class DeferredResetTest {
+
+    @Test(timeout = 30_000)
+    public void testConnectionsAreReused() throws Exception {
+        DataSource ds = createDataSource();
+        try {
+            for (int i = 0; i < 100; i++) {
+                try (Connection con = ds.getConnection()) {
+                    con.setAutoCommit(false);
+                }
+                // the single connection comes back once it has been reset
+                try (Connection con = ds.getConnection()) {
+                    assertTrue(con.getAutoCommit());
+                }
+            }
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testConnectionsAreResetInParallel() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        DataSource ds = ManagedDataSourceBuilder.builder()
+                .name("deferred-reset")
+                .dataSource(stub)
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(0)
+                .maxPoolSize(8)
+                .connectionTimeout(5_000)
+                .deferredReset(true)
+                .registerMBean(true)
+                .build();
+        try {
+            PoolMXBean pool = getPoolMXBean("deferred-reset");
+            List<Connection> connections = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Connection con = ds.getConnection();
+                con.setAutoCommit(false);
+                connections.add(con);
+            }
+            // restoring the auto-commit mode is a slow round-trip
+            stub.setAutoCommitDelay(200);
+
+            long start = System.nanoTime();
+            for (Connection con : connections) {
+                con.close();
+            }
+            long closed = NANOSECONDS.toMillis(System.nanoTime() - start);
+            await(() -> pool.getIdleConnections() == 8);
+            long elapsed = NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // the application does not wait for the resets
+            assertTrue("close took " + closed + "ms", closed < 200);
+            // which are not done one after the other
+            assertTrue("resets took " + elapsed + "ms", elapsed < 1_200);
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    private static DataSource createDataSource() throws Exception {
+        return ManagedDataSourceBuilder.builder()
+                .dataSource(new StubDataSource())
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(0)
+                .maxPoolSize(1)
+                .connectionTimeout(5_000)
+                .deferredReset(true)
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static PoolMXBean getPoolMXBean(String name) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : server.queryNames(new ObjectName("org.ops4j.pax.transx:type=Pool,*"), null)) {
+            PoolMXBean pool = JMX.newMXBeanProxy(server, objectName, PoolMXBean.class);
+            if (pool.getPoolName().endsWith("-" + name)) {
+                return pool;
+            }
+        }
+        throw new IllegalStateException("No pool named " + name);
+    }
+
+}
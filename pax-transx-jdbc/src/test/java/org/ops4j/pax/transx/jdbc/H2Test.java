@@ -16,10 +16,12 @@
  */
 package org.ops4j.pax.transx.jdbc;
 
+import org.h2.jdbc.JdbcConnection;
 import org.h2.jdbcx.JdbcDataSource;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.ops4j.pax.transx.jdbc.impl.TransxDataSource;
 import org.ops4j.pax.transx.tm.Transaction;
 import org.ops4j.pax.transx.tm.TransactionManager;
 import org.ops4j.pax.transx.tm.impl.geronimo.GeronimoPlatformTransactionManager;
@@ -39,6 +41,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -165,6 +168,45 @@ public class H2Test {
         }
     }
 
+    @Test
+    public void testConnectionsWithTxAndCredentials() throws Exception {
+        DataSource ds = wrap(createH2DataSource());
+
+        Transaction tx = tm.begin();
+        try {
+            try (Connection con = ds.getConnection();
+                 Connection con2 = ds.getConnection("sa", "");
+                 Connection con3 = ds.getConnection("sa", "")) {
+                JdbcConnection pc = con.unwrap(JdbcConnection.class);
+                JdbcConnection pc2 = con2.unwrap(JdbcConnection.class);
+                JdbcConnection pc3 = con3.unwrap(JdbcConnection.class);
+                assertNotSame(pc, pc2);
+                assertSame(pc2, pc3);
+            }
+            tx.commit();
+        } catch (Throwable t) {
+            tx.rollback();
+            throw t;
+        }
+    }
+
+    @Test
+    public void testAsyncConnectionsWithTx() throws Exception {
+        TransxDataSource ds = (TransxDataSource) wrap(createH2DataSource());
+
+        Transaction tx = tm.begin();
+        try {
+            try (Connection con = ds.getConnection();
+                 Connection con2 = ds.getConnectionAsync().toCompletableFuture().get(5, TimeUnit.SECONDS)) {
+                assertSame(con.unwrap(JdbcConnection.class), con2.unwrap(JdbcConnection.class));
+            }
+            tx.commit();
+        } catch (Throwable t) {
+            tx.rollback();
+            throw t;
+        }
+    }
+
     @Test
     public void testSpring() throws Exception {
         DataSource ds = wrap(createH2DataSource());
@@ -0,0 +1,138 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HandleRecyclingTest {
+
+    @Test(timeout = 30_000)
+    public void testHandlesAreRecycled() throws Exception {
+        DataSource ds = createDataSource(true);
+        try {
+            Connection first = ds.getConnection();
+            first.close();
+            assertTrue(first.isClosed());
+            Connection second = ds.getConnection();
+            assertSame(first, second);
+            assertTrue(second.getAutoCommit());
+            second.close();
+
+            // a handle is only recycled for the same credentials
+            Connection other = ds.getConnection("other", "secret");
+            assertNotSame(first, other);
+            other.close();
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testHandlesAreNotRecycledByDefault() throws Exception {
+        DataSource ds = createDataSource(false);
+        try {
+            Connection first = ds.getConnection();
+            first.close();
+            try (Connection second = ds.getConnection()) {
+                assertNotSame(first, second);
+            }
+            try {
+                first.getAutoCommit();
+                fail("Closed connection should not be usable");
+            } catch (SQLException e) {
+                // expected
+            }
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testDoubleCloseAcrossBorrowers() throws Exception {
+        DataSource ds = createDataSource(false);
+        try {
+            Connection first = ds.getConnection();
+            first.close();
+            try (Connection second = ds.getConnection()) {
+                // closing again the connection of the first borrower leaves the second one alone
+                first.close();
+                assertFalse(second.isClosed());
+                assertTrue(second.getAutoCommit());
+            }
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testStaleStatementIsRefused() throws Exception {
+        DataSource ds = createDataSource(true);
+        try {
+            Connection first = ds.getConnection();
+            Statement statement = first.createStatement();
+            first.close();
+            try (Connection second = ds.getConnection()) {
+                assertSame(first, second);
+                // the statement of the first borrower cannot reach the handle of the second one
+                try {
+                    statement.getConnection().close();
+                    fail("Statement of a recycled connection should not be usable");
+                } catch (SQLException e) {
+                    // expected
+                }
+                try {
+                    statement.execute("SELECT 1");
+                    fail("Statement of a recycled connection should not be usable");
+                } catch (SQLException e) {
+                    // expected
+                }
+                statement.close();
+                assertFalse(second.isClosed());
+                try (Statement current = second.createStatement()) {
+                    assertSame(second, current.getConnection());
+                }
+            }
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    private static DataSource createDataSource(boolean recycleHandles) throws Exception {
+        return ManagedDataSourceBuilder.builder()
+                .dataSource(new StubDataSource())
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(0)
+                .maxPoolSize(1)
+                .connectionTimeout(5_000)
+                .recycleHandles(recycleHandles)
+                .build();
+    }
+
+}
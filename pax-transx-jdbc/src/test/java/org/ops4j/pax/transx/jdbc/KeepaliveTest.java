@@ -0,0 +1,168 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.connection.utils.UserPasswordConnectionRequestInfoImpl;
+import org.ops4j.pax.transx.connector.PoolMXBean;
+import org.ops4j.pax.transx.jdbc.impl.LocalDataSourceMCF;
+import org.ops4j.pax.transx.jdbc.stubs.StubConnection;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeepaliveTest {
+
+    @Test(timeout = 60_000)
+    public void testIdleConnectionsAreValidatedInBackground() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        stub.setValidationDelay(300);
+        DataSource ds = ManagedDataSourceBuilder.builder()
+                .name("keepalive")
+                .dataSource(stub)
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(4)
+                .maxPoolSize(4)
+                .warmUp(true)
+                .keepaliveTime(30_000)
+                .houseKeepingPeriod(500)
+                .validationConcurrency(4)
+                .registerMBean(true)
+                .build();
+        try {
+            PoolMXBean pool = getPoolMXBean("keepalive");
+            assertEquals(4, stub.getConnections().size());
+
+            // idle connections are not validated when borrowed anymore
+            Thread.sleep(1_000);
+            ds.getConnection().close();
+            assertEquals(0L, validations(stub));
+
+            StubConnection broken = stub.getConnections().get(0);
+            broken.setValid(false);
+            await(broken::isClosed);
+            // the connection borrowed above is due a bit later, the others went through the same batch
+            await(() -> stub.getConnections().subList(1, 4).stream().allMatch(con -> con.getValidations() == 1L));
+            for (StubConnection con : stub.getConnections().subList(1, 4)) {
+                assertFalse(con.isClosed());
+            }
+            assertTrue(stub.getMaxConcurrentValidations() > 1);
+            // and the broken one has been replaced
+            await(() -> pool.getIdleConnections() == 4);
+            assertEquals(5, stub.getConnections().size());
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testBatchIsValidatedInParallel() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        stub.setValidationDelay(300);
+        LocalDataSourceMCF mcf = new LocalDataSourceMCF(stub);
+        mcf.setValidationConcurrency(4);
+        Set<ManagedConnection> connections = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            connections.add(mcf.createManagedConnection(null, UserPasswordConnectionRequestInfoImpl.NULL_CRI));
+        }
+        stub.getConnections().get(3).setValid(false);
+        stub.getConnections().get(6).setValid(false);
+        try {
+            long start = System.nanoTime();
+            Set<?> invalid = mcf.getInvalidConnections(connections);
+            long elapsed = NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(2, invalid.size());
+            assertEquals(4, stub.getMaxConcurrentValidations());
+            // two rounds of four validations instead of eight
+            assertTrue("validation took " + elapsed + "ms", elapsed >= 600 && elapsed < 1_800);
+        } finally {
+            for (ManagedConnection mc : connections) {
+                mc.destroy();
+            }
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testBlockedValidationsAreAbandoned() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        LocalDataSourceMCF mcf = new LocalDataSourceMCF(stub);
+        mcf.setValidationConcurrency(2);
+        mcf.setValidationBatchTimeout(500);
+        // no network timeout, the validations hang until abandoned
+        mcf.setValidationTimeout(0);
+        Set<ManagedConnection> hung = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            hung.add(mcf.createManagedConnection(null, UserPasswordConnectionRequestInfoImpl.NULL_CRI));
+        }
+        stub.setValidationDelay(20_000);
+
+        long start = System.nanoTime();
+        Set<?> invalid = mcf.getInvalidConnections(hung);
+        long elapsed = NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(4, invalid.size());
+        assertTrue("validation took " + elapsed + "ms", elapsed < 1_500);
+        // only two validations were started, and those connections have been aborted
+        assertEquals(2, stub.getMaxConcurrentValidations());
+        assertEquals(2L, validations(stub));
+        assertEquals(2L, stub.getConnections().stream().filter(StubConnection::isClosed).count());
+
+        // the threads of the factory are available again
+        stub.setValidationDelay(0);
+        Set<ManagedConnection> healthy = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            healthy.add(mcf.createManagedConnection(null, UserPasswordConnectionRequestInfoImpl.NULL_CRI));
+        }
+        assertTrue(mcf.getInvalidConnections(healthy).isEmpty());
+    }
+
+    private static long validations(StubDataSource stub) {
+        return stub.getConnections().stream().mapToLong(StubConnection::getValidations).sum();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static PoolMXBean getPoolMXBean(String name) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : server.queryNames(new ObjectName("org.ops4j.pax.transx:type=Pool,*"), null)) {
+            PoolMXBean pool = JMX.newMXBeanProxy(server, objectName, PoolMXBean.class);
+            if (pool.getPoolName().endsWith("-" + name)) {
+                return pool;
+            }
+        }
+        throw new IllegalStateException("No pool named " + name);
+    }
+
+}
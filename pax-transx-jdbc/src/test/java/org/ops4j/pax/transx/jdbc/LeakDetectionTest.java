@@ -0,0 +1,109 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.connector.PoolMXBean;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+
+import static org.junit.Assert.assertEquals;
+
+public class LeakDetectionTest {
+
+    @Test(timeout = 30_000)
+    public void testLeakIsReclaimed() throws Exception {
+        DataSource ds = createDataSource("leak", false);
+        try {
+            PoolMXBean pool = getPoolMXBean("leak");
+
+            try (Connection con = ds.getConnection()) {
+                // returned in time
+            }
+            Connection leaked = ds.getConnection();
+            assertEquals(1, pool.getActiveConnections());
+
+            Thread.sleep(3_000);
+            assertEquals(1, pool.getLeakedConnectionCount());
+            assertEquals(0, pool.getActiveConnections());
+
+            // closing the handle of a reclaimed connection does not give it back to the pool
+            leaked.close();
+            assertEquals(0, pool.getIdleConnections());
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testStaleCloseWithDeferredReset() throws Exception {
+        DataSource ds = createDataSource("leak-deferred", true);
+        try {
+            PoolMXBean pool = getPoolMXBean("leak-deferred");
+            Connection leaked = ds.getConnection();
+            Thread.sleep(3_000);
+            assertEquals(1, pool.getLeakedConnectionCount());
+            assertEquals(0, pool.getTotalConnections());
+
+            // the reclaimed connection is neither cleaned up nor given back
+            leaked.close();
+            Thread.sleep(200);
+            assertEquals(0, pool.getTotalConnections());
+
+            try (Connection c1 = ds.getConnection(); Connection c2 = ds.getConnection()) {
+                assertEquals(2, pool.getActiveConnections());
+            }
+            Thread.sleep(200);
+            assertEquals(2, pool.getIdleConnections());
+            assertEquals(1, pool.getLeakedConnectionCount());
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    private static DataSource createDataSource(String name, boolean deferredReset) throws Exception {
+        return ManagedDataSourceBuilder.builder()
+                .name(name)
+                .dataSource(new StubDataSource())
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(0)
+                .maxPoolSize(2)
+                .leakDetectionThreshold(2_000)
+                .leakDetectionSampleRate(1.0)
+                .leakReclaim(true)
+                .deferredReset(deferredReset)
+                .registerMBean(true)
+                .build();
+    }
+
+    private static PoolMXBean getPoolMXBean(String name) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = server.queryNames(new ObjectName("org.ops4j.pax.transx:type=Pool,*"), null).stream()
+                .filter(n -> n.getKeyProperty("name").endsWith("-" + name + "\""))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        return JMX.newMXBeanProxy(server, objectName, PoolMXBean.class);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.connector.PoolMXBean;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTracker;
+import org.ops4j.pax.transx.connector.metrics.PoolStats;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PoolMetricsTest {
+
+    @Test(timeout = 30_000)
+    public void testBorrowsAreReported() throws Exception {
+        RecordingTracker tracker = new RecordingTracker();
+        DataSource ds = ManagedDataSourceBuilder.builder()
+                .name("metrics")
+                .dataSource(new StubDataSource())
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(0)
+                .maxPoolSize(2)
+                .connectionTimeout(500)
+                .metricsTrackerFactory((poolName, subPoolName, stats) -> {
+                    tracker.stats = stats;
+                    return tracker;
+                })
+                .registerMBean(true)
+                .build();
+        try {
+            PoolMXBean pool = getPoolMXBean("metrics");
+            for (int i = 0; i < 5; i++) {
+                ds.getConnection().close();
+            }
+            assertEquals(5L, tracker.acquired.sum());
+            assertEquals(5L, tracker.used.sum());
+            assertEquals(1L, tracker.created.sum());
+
+            try (Connection c1 = ds.getConnection(); Connection c2 = ds.getConnection()) {
+                assertEquals(2, pool.getActiveConnections());
+                assertEquals(2, tracker.stats.getActiveConnections());
+                assertEquals(2, pool.getSubPools().get("0").getActiveConnections());
+                try {
+                    ds.getConnection();
+                    fail("Expected the pool to be exhausted");
+                } catch (SQLException e) {
+                    // expected
+                }
+                assertEquals(1L, tracker.timeouts.sum());
+            }
+            assertEquals(7L, tracker.acquired.sum());
+            assertEquals(7L, tracker.used.sum());
+            assertEquals(0, pool.getActiveConnections());
+            assertEquals(2, pool.getIdleConnections());
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+        assertTrue(tracker.closed);
+    }
+
+    static class RecordingTracker implements PoolMetricsTracker {
+
+        final LongAdder created = new LongAdder();
+        final LongAdder acquired = new LongAdder();
+        final LongAdder used = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        volatile PoolStats stats;
+        volatile boolean closed;
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+            created.increment();
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquired.increment();
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            used.increment();
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static PoolMXBean getPoolMXBean(String name) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : server.queryNames(new ObjectName("org.ops4j.pax.transx:type=Pool,*"), null)) {
+            PoolMXBean pool = JMX.newMXBeanProxy(server, objectName, PoolMXBean.class);
+            if (pool.getPoolName().endsWith("-" + name)) {
+                return pool;
+            }
+        }
+        throw new IllegalStateException("No pool named " + name);
+    }
+
+}
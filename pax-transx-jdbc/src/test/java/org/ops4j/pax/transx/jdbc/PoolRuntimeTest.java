@@ -0,0 +1,97 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.connector.PoolRuntime;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PoolRuntimeTest {
+
+    @Test(timeout = 30_000)
+    public void testConnectionsAreCappedAcrossDataSources() throws Exception {
+        try (PoolRuntime runtime = PoolRuntime.builder().threads(2).maxConnections(2).build()) {
+            DataSource ds1 = createDataSource(runtime);
+            DataSource ds2 = createDataSource(runtime);
+            try {
+                try (Connection c1 = ds1.getConnection(); Connection c2 = ds1.getConnection()) {
+                    assertEquals(2, runtime.getTotalConnections());
+                }
+                // the idle connections of the first data source make room for the second one
+                try (Connection c1 = ds2.getConnection(); Connection c2 = ds2.getConnection()) {
+                    assertTrue(runtime.getTotalConnections() <= 2);
+                }
+            } finally {
+                ((AutoCloseable) ds1).close();
+                ((AutoCloseable) ds2).close();
+            }
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testMinIdleAboveTheCapDoesNotChurn() throws Exception {
+        try (PoolRuntime runtime = PoolRuntime.builder().threads(2).maxConnections(4).build()) {
+            StubDataSource stub1 = new StubDataSource();
+            StubDataSource stub2 = new StubDataSource();
+            DataSource ds1 = createDataSource(runtime, stub1, 3);
+            DataSource ds2 = createDataSource(runtime, stub2, 3);
+            try {
+                // the second data source only gets what the first one left
+                assertEquals(3, stub1.getConnections().size());
+                assertEquals(1, stub2.getConnections().size());
+                // and the housekeepers do not keep closing each other's connections to reopen their own
+                Thread.sleep(2_000);
+                assertEquals(3, stub1.getConnections().size());
+                assertEquals(1, stub2.getConnections().size());
+                assertEquals(4, runtime.getTotalConnections());
+
+                try (Connection c = ds2.getConnection()) {
+                    assertEquals(4, runtime.getTotalConnections());
+                }
+                assertEquals(3, stub1.getConnections().size());
+            } finally {
+                ((AutoCloseable) ds1).close();
+                ((AutoCloseable) ds2).close();
+            }
+        }
+    }
+
+    private static DataSource createDataSource(PoolRuntime runtime) throws Exception {
+        return createDataSource(runtime, new StubDataSource(), 0);
+    }
+
+    private static DataSource createDataSource(PoolRuntime runtime, StubDataSource stub, int minIdle) throws Exception {
+        return ManagedDataSourceBuilder.builder()
+                .dataSource(stub)
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(minIdle)
+                .warmUp(minIdle > 0)
+                .maxPoolSize(4)
+                .houseKeepingPeriod(200)
+                .connectionTimeout(5_000)
+                .poolRuntime(runtime)
+                .build();
+    }
+
+}
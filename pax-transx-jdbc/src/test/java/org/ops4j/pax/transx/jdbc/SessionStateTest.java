@@ -0,0 +1,125 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.jdbc.stubs.StubConnection;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionStateTest {
+
+    @Test(timeout = 30_000)
+    public void testUnchangedStateDoesNotReachTheDriver() throws Exception {
+        DataSource ds = createDataSource();
+        try {
+            try (Connection con = ds.getConnection()) {
+                con.setReadOnly(true);
+                con.setAutoCommit(false);
+            }
+            try (Connection con = ds.getConnection()) {
+                assertFalse(con.isReadOnly());
+            }
+
+            StubConnection.sessionStateCalls.reset();
+            for (int i = 0; i < 10; i++) {
+                try (Connection con = ds.getConnection()) {
+                    assertTrue(con.getAutoCommit());
+                    con.setAutoCommit(true);
+                    con.commit();
+                }
+            }
+            assertEquals(0, StubConnection.sessionStateCalls.sum());
+
+            try (Connection con = ds.getConnection()) {
+                con.setAutoCommit(false);
+                con.commit();
+                con.setAutoCommit(true);
+            }
+            // each local transaction switches autocommit off and back on, and nothing is left to reset
+            assertEquals(4, StubConnection.sessionStateCalls.sum());
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testSessionPropertiesAreReset() throws Exception {
+        DataSource ds = createDataSource();
+        try {
+            int isolation;
+            try (Connection con = ds.getConnection()) {
+                isolation = con.getTransactionIsolation();
+                con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+                con.setAutoCommit(false);
+            }
+            try (Connection con = ds.getConnection()) {
+                assertEquals(isolation, con.getTransactionIsolation());
+                assertTrue(con.getAutoCommit());
+            }
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testSchemaChangedByStatementIsReset() throws Exception {
+        DataSource ds = createDataSource();
+        try {
+            try (Connection con = ds.getConnection()) {
+                con.setSchema("app");
+                con.setSchema(null);
+                try (Statement st = con.createStatement()) {
+                    st.execute("SET SCHEMA other");
+                }
+            }
+            try (Connection con = ds.getConnection()) {
+                assertNull(con.getSchema());
+                try (Statement st = con.createStatement()) {
+                    st.execute("SET SCHEMA other");
+                }
+                assertEquals("other", con.getSchema());
+                con.setSchema(null);
+            }
+            try (Connection con = ds.getConnection()) {
+                assertNull(con.getSchema());
+            }
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    private static DataSource createDataSource() throws Exception {
+        return ManagedDataSourceBuilder.builder()
+                .dataSource(new StubDataSource())
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(0)
+                .maxPoolSize(1)
+                .connectionTimeout(5_000)
+                .build();
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.connector.PoolMXBean;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubPoolTest {
+
+    @Test(timeout = 30_000)
+    public void testTotalConnectionsAreShared() throws Exception {
+        DataSource ds = ManagedDataSourceBuilder.builder()
+                .name("subpool-cap")
+                .dataSource(new StubDataSource())
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(0)
+                .maxPoolSize(10)
+                .maxTotalConnections(4)
+                .connectionTimeout(5_000)
+                .registerMBean(true)
+                .build();
+        try {
+            PoolMXBean pool = getPoolMXBean("subpool-cap");
+            List<Connection> greedy = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                greedy.add(ds.getConnection("greedy", "secret"));
+            }
+
+            CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+                try (Connection con = ds.getConnection("other", "secret")) {
+                    // nothing
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(500);
+            assertFalse(other.isDone());
+            assertEquals(4, pool.getTotalConnections());
+
+            // the connection given back goes to the starving sub-pool
+            greedy.remove(0).close();
+            other.get(5, TimeUnit.SECONDS);
+            assertTrue(pool.getTotalConnections() <= 4);
+
+            for (Connection con : greedy) {
+                con.close();
+            }
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testLeastRecentlyUsedSubPoolsAreEvicted() throws Exception {
+        DataSource ds = ManagedDataSourceBuilder.builder()
+                .name("subpool-lru")
+                .dataSource(new StubDataSource())
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(1)
+                .maxPoolSize(2)
+                .maxSubPools(2)
+                .registerMBean(true)
+                .build();
+        try {
+            PoolMXBean pool = getPoolMXBean("subpool-lru");
+            for (int i = 0; i < 5; i++) {
+                try (Connection con = ds.getConnection("user" + i, "secret")) {
+                    // nothing
+                }
+            }
+            assertEquals(2, pool.getSubPools().size());
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    private static PoolMXBean getPoolMXBean(String name) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : server.queryNames(new ObjectName("org.ops4j.pax.transx:type=Pool,*"), null)) {
+            PoolMXBean pool = JMX.newMXBeanProxy(server, objectName, PoolMXBean.class);
+            if (pool.getPoolName().endsWith("-" + name)) {
+                return pool;
+            }
+        }
+        throw new IllegalStateException("No pool named " + name);
+    }
+
+}
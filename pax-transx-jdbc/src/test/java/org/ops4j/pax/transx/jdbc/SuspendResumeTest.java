@@ -0,0 +1,143 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.connector.PoolMXBean;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SuspendResumeTest {
+
+    @Test(timeout = 30_000)
+    public void testCallersWaitWhileSuspended() throws Exception {
+        DataSource ds = createDataSource("suspend-wait");
+        try {
+            PoolMXBean pool = getPoolMXBean("suspend-wait");
+            pool.suspendPool();
+            assertTrue(pool.isSuspended());
+
+            CompletableFuture<Void> borrow = CompletableFuture.runAsync(() -> {
+                try (Connection con = ds.getConnection()) {
+                    // nothing
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(500);
+            assertFalse(borrow.isDone());
+            assertEquals(0, pool.getTotalConnections());
+
+            pool.resumePool();
+            borrow.get(5, TimeUnit.SECONDS);
+            assertFalse(pool.isSuspended());
+            assertTrue(pool.getTotalConnections() >= 2);
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testCallersTimeOutWhileSuspended() throws Exception {
+        DataSource ds = createDataSource("suspend-timeout");
+        try {
+            PoolMXBean pool = getPoolMXBean("suspend-timeout");
+            pool.suspendPool();
+            try (Connection con = ds.getConnection()) {
+                fail("Expected a timeout");
+            } catch (SQLException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("suspended"));
+            }
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testResumeDoesNotWaitForWarmUp() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        DataSource ds = createDataSource("suspend-slow", stub);
+        try {
+            PoolMXBean pool = getPoolMXBean("suspend-slow");
+            pool.suspendPool();
+            pool.softEvictConnections();
+            stub.setConnectionDelay(500);
+
+            CompletableFuture<Void> borrow = CompletableFuture.runAsync(() -> {
+                try (Connection con = ds.getConnection()) {
+                    // nothing
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            long start = System.nanoTime();
+            pool.resumePool();
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 250);
+            // callers are let in once the pool has been warmed up
+            assertTrue(pool.isSuspended());
+            assertFalse(borrow.isDone());
+
+            borrow.get(5, TimeUnit.SECONDS);
+            assertFalse(pool.isSuspended());
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    private static DataSource createDataSource(String name) throws Exception {
+        return createDataSource(name, new StubDataSource());
+    }
+
+    private static DataSource createDataSource(String name, StubDataSource stub) throws Exception {
+        return ManagedDataSourceBuilder.builder()
+                .name(name)
+                .dataSource(stub)
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(2)
+                .maxPoolSize(4)
+                .connectionTimeout(1_000)
+                .registerMBean(true)
+                .build();
+    }
+
+    private static PoolMXBean getPoolMXBean(String name) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : server.queryNames(new ObjectName("org.ops4j.pax.transx:type=Pool,*"), null)) {
+            PoolMXBean pool = JMX.newMXBeanProxy(server, objectName, PoolMXBean.class);
+            if (pool.getPoolName().endsWith("-" + name)) {
+                return pool;
+            }
+        }
+        throw new IllegalStateException("No pool named " + name);
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.connection.utils.UserPasswordConnectionRequestInfoImpl;
+import org.ops4j.pax.transx.jdbc.impl.LocalDataSourceMCF;
+import org.ops4j.pax.transx.jdbc.stubs.StubConnection;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.resource.spi.ManagedConnection;
+import java.util.Collections;
+import java.util.Set;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ValidationTest {
+
+    @Test(timeout = 30_000)
+    public void testIsValidWithValidationTimeout() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        LocalDataSourceMCF mcf = new LocalDataSourceMCF(stub);
+        mcf.setValidationTimeout(1_500);
+        ManagedConnection mc = mcf.createManagedConnection(null, UserPasswordConnectionRequestInfoImpl.NULL_CRI);
+        StubConnection con = stub.getConnections().get(0);
+        try {
+            assertTrue(isValid(mcf, mc));
+            assertEquals(1L, con.getValidations());
+            // rounded up to the second
+            assertEquals(2, con.getValidationTimeout());
+            // the network timeout is restored once validated
+            assertEquals(0, con.getNetworkTimeout());
+
+            con.setValid(false);
+            assertTrue(!isValid(mcf, mc));
+        } finally {
+            mc.destroy();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testValidationQuery() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        LocalDataSourceMCF mcf = new LocalDataSourceMCF(stub);
+        mcf.setValidationQuery("SELECT 1");
+        mcf.setValidationTimeout(3_000);
+        ManagedConnection mc = mcf.createManagedConnection(null, UserPasswordConnectionRequestInfoImpl.NULL_CRI);
+        StubConnection con = stub.getConnections().get(0);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(isValid(mcf, mc));
+            }
+            // the query is prepared once for the connection, and used instead of isValid
+            assertEquals(1L, con.getPreparedStatements());
+            assertEquals(3L, con.getQueries());
+            assertEquals(0L, con.getValidations());
+
+            con.setValid(false);
+            assertTrue(!isValid(mcf, mc));
+        } finally {
+            mc.destroy();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testHungSocketIsDetected() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        LocalDataSourceMCF mcf = new LocalDataSourceMCF(stub);
+        mcf.setValidationTimeout(500);
+        ManagedConnection mc = mcf.createManagedConnection(null, UserPasswordConnectionRequestInfoImpl.NULL_CRI);
+        StubConnection con = stub.getConnections().get(0);
+        // the database does not answer anymore
+        stub.setValidationDelay(20_000);
+        try {
+            long start = System.nanoTime();
+            boolean valid = isValid(mcf, mc);
+            long elapsed = NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(!valid);
+            // reported broken after the validation timeout rather than the TCP timeout
+            assertTrue("validation took " + elapsed + "ms", elapsed >= 500 && elapsed < 1_500);
+            assertEquals(0, con.getNetworkTimeout());
+        } finally {
+            mc.destroy();
+        }
+    }
+
+    private static boolean isValid(LocalDataSourceMCF mcf, ManagedConnection mc) throws Exception {
+        Set<?> invalid = mcf.getInvalidConnections(Collections.singleton(mc));
+        return !invalid.contains(mc);
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc;
+
+import org.junit.Test;
+import org.ops4j.pax.transx.jdbc.stubs.CountingDataSource;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
+
+import javax.resource.spi.TransactionSupport.TransactionSupportLevel;
+import javax.sql.DataSource;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertTrue;
+
+public class WarmUpTest {
+
+    @Test(timeout = 30_000)
+    public void testConnectionsAreOpenedInParallel() throws Exception {
+        CountingDataSource stub = new CountingDataSource();
+        stub.setConnectionDelay(300);
+        long start = System.nanoTime();
+        DataSource ds = ManagedDataSourceBuilder.builder()
+                .name("warmup-parallel")
+                .dataSource(stub)
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(8)
+                .maxPoolSize(10)
+                .warmUp(true)
+                .warmUpConcurrency(4)
+                .build();
+        long elapsed = NANOSECONDS.toMillis(System.nanoTime() - start);
+        try {
+            // ready when built
+            assertTrue(stub.getOpenConnections() >= 8);
+            // two rounds of four connections, far from the eight rounds of a sequential warm-up
+            assertTrue("warm-up took " + elapsed + "ms", elapsed >= 600 && elapsed < 1_800);
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testWarmUpTimeout() throws Exception {
+        StubDataSource stub = new StubDataSource();
+        stub.setConnectionDelay(2_000);
+        long start = System.nanoTime();
+        DataSource ds = ManagedDataSourceBuilder.builder()
+                .name("warmup-timeout")
+                .dataSource(stub)
+                .transaction(TransactionSupportLevel.NoTransaction)
+                .minIdle(4)
+                .maxPoolSize(4)
+                .warmUp(true)
+                .warmUpTimeout(300)
+                .build();
+        long elapsed = NANOSECONDS.toMillis(System.nanoTime() - start);
+        try {
+            // the build does not wait for the slow connections
+            assertTrue("build took " + elapsed + "ms", elapsed < 1_500);
+        } finally {
+            ((AutoCloseable) ds).close();
+        }
+    }
+
+}
@@ -23,6 +23,8 @@ import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.infra.BenchmarkParams;
+import org.ops4j.pax.transx.connector.PoolEngine;
+import org.ops4j.pax.transx.connector.PoolEngines;
 import org.ops4j.pax.transx.jdbc.ManagedDataSourceBuilder;
 import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
 
@@ -35,20 +37,47 @@ public class BenchBase
     @Param({ "32" })
     public int maxPoolSize;
 
+    @Param({ "bag", "striped", "fifo" })
+    public String poolEngine;
+
     public static DataSource DS;
 
     @Setup(Level.Trial)
     public void setup(BenchmarkParams params) throws Exception
     {
-        DS = ManagedDataSourceBuilder.builder()
-                .dataSource(new StubDataSource())
+        StubDataSource dataSource = new StubDataSource();
+        ManagedDataSourceBuilder builder = ManagedDataSourceBuilder.builder()
+                .dataSource(dataSource)
                 .userName("gnodet")
                 .password("")
                 .transaction(TransactionSupport.TransactionSupportLevel.NoTransaction)
                 .minIdle(0)
                 .maxPoolSize(maxPoolSize)
                 .connectionTimeout(8000)
-                .build();
+                .poolEngine(poolEngine());
+        configure(builder, dataSource);
+        DS = builder.build();
+    }
+
+    /**
+     * Hook for benchmarks comparing other settings of the data source.
+     */
+    protected void configure(ManagedDataSourceBuilder builder, StubDataSource dataSource)
+    {
+    }
+
+    private PoolEngine.Factory poolEngine()
+    {
+        switch (poolEngine) {
+            case "bag":
+                return PoolEngines.BAG;
+            case "striped":
+                return PoolEngines.STRIPED;
+            case "fifo":
+                return PoolEngines.FIFO;
+            default:
+                throw new IllegalArgumentException("Unsupported pool engine: " + poolEngine);
+        }
     }
 
     @TearDown(Level.Trial)
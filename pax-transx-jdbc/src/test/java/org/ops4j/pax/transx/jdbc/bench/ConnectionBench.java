@@ -22,8 +22,15 @@ import org.openjdk.jmh.annotations.CompilerControl;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.transx.jdbc.ManagedDataSourceBuilder;
+import org.ops4j.pax.transx.jdbc.impl.LocalDataSourceMCF;
+import org.ops4j.pax.transx.jdbc.stubs.StubDataSource;
 
+import javax.resource.spi.security.PasswordCredential;
+import javax.security.auth.Subject;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.concurrent.TimeUnit;
@@ -34,6 +41,26 @@ import java.util.concurrent.TimeUnit;
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 public class ConnectionBench extends BenchBase
 {
+    @Param({ "false", "true" })
+    public boolean subject;
+
+    @Param({ "false", "true" })
+    public boolean recycleHandles;
+
+    @Override
+    protected void configure(ManagedDataSourceBuilder builder, StubDataSource dataSource)
+    {
+        if (subject) {
+            // the factory created by the builder is equal to this one, as it wraps the same data source
+            PasswordCredential credential = new PasswordCredential("gnodet", new char[0]);
+            credential.setManagedConnectionFactory(new LocalDataSourceMCF(dataSource));
+            Subject s = new Subject();
+            s.getPrivateCredentials().add(credential);
+            builder.subjectSource(() -> s);
+        }
+        builder.recycleHandles(recycleHandles);
+    }
+
     @Benchmark
     @CompilerControl(CompilerControl.Mode.INLINE)
     public static Connection cycleConnection() throws SQLException
@@ -42,4 +69,18 @@ public class ConnectionBench extends BenchBase
         connection.close();
         return connection;
     }
+
+    @Benchmark
+    @Threads(16)
+    public static Connection cycleConnection16() throws SQLException
+    {
+        return cycleConnection();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public static Connection cycleConnection64() throws SQLException
+    {
+        return cycleConnection();
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ops4j.pax.transx.jdbc.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.transx.jdbc.stubs.StubConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures a typical unit of work changing the session state of the connection,
+ * and reports the number of calls which reached the driver for each of them.
+ */
+@Warmup(iterations=3)
+@Measurement(iterations=8)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SessionStateBench extends BenchBase
+{
+    private static final LongAdder CYCLES = new LongAdder();
+
+    @Setup(Level.Iteration)
+    public void resetCounters()
+    {
+        CYCLES.reset();
+        StubConnection.sessionStateCalls.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportCounters()
+    {
+        long cycles = CYCLES.sum();
+        if (cycles > 0) {
+            System.out.printf(" (%.2f driver calls per cycle)", (double) StubConnection.sessionStateCalls.sum() / cycles);
+        }
+    }
+
+    @Benchmark
+    public static Connection cycleTransaction() throws SQLException
+    {
+        Connection connection = DS.getConnection();
+        if (connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+        }
+        connection.setReadOnly(false);
+        connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        connection.commit();
+        connection.setAutoCommit(true);
+        connection.close();
+        CYCLES.increment();
+        return connection;
+    }
+
+    @Benchmark
+    @Threads(16)
+    public static Connection cycleTransaction16() throws SQLException
+    {
+        return cycleTransaction();
+    }
+}
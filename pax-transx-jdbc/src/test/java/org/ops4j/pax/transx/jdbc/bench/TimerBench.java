@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.transx.connector.impl.TimingWheel;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of arming and cancelling a connection timer, as done on each borrow and return,
+ * with the timing wheel and with a scheduled executor.
+ */
+@Warmup(iterations=3)
+@Measurement(iterations=8)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TimerBench
+{
+    private static final Runnable TASK = () -> { };
+
+    private TimingWheel wheel;
+    private ScheduledThreadPoolExecutor executor;
+
+    @State(Scope.Thread)
+    public static class ThreadTimer
+    {
+        TimingWheel.Timer timer;
+
+        @Setup(Level.Trial)
+        public void setup(TimerBench bench)
+        {
+            timer = bench.wheel.newTimer(TASK);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        wheel = new TimingWheel(100, TimeUnit.MILLISECONDS, 512);
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown()
+    {
+        wheel.clear();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean wheel(ThreadTimer state)
+    {
+        wheel.schedule(state.timer, 10, TimeUnit.MINUTES);
+        return wheel.cancel(state.timer);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean wheel16(ThreadTimer state)
+    {
+        return wheel(state);
+    }
+
+    @Benchmark
+    public boolean executor()
+    {
+        ScheduledFuture<?> future = executor.schedule(TASK, 10, TimeUnit.MINUTES);
+        return future.cancel(false);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean executor16()
+    {
+        return executor();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc.bench;
+
+import org.apache.geronimo.transaction.manager.GeronimoTransactionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.transx.tm.Transaction;
+import org.ops4j.pax.transx.tm.TransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of resolving the current transaction wrapper,
+ * which is done for every connection allocation inside a transaction.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations=3)
+@Measurement(iterations=8)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransactionBench
+{
+    @Param({ "geronimo", "narayana", "atomikos" })
+    public String transactionManager;
+
+    TransactionManager tm;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        switch (transactionManager) {
+            case "geronimo":
+                tm = new org.ops4j.pax.transx.tm.impl.geronimo.TransactionManagerWrapper(new GeronimoTransactionManager());
+                break;
+            case "narayana":
+                tm = new org.jboss.narayana.osgi.jta.internal.TransactionManagerWrapper(com.arjuna.ats.jta.TransactionManager.transactionManager());
+                break;
+            case "atomikos":
+                Path dir = Paths.get("target/data/atomikos");
+                Files.createDirectories(dir);
+                System.setProperty("com.atomikos.icatch.log_base_dir", dir.toString());
+                tm = new org.ops4j.pax.transx.tm.impl.atomikos.TransactionManagerWrapper();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported transaction manager: " + transactionManager);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Transaction getTransaction1(TransactionState state)
+    {
+        return tm.getTransaction();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Transaction getTransaction4(TransactionState state)
+    {
+        return tm.getTransaction();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Transaction getTransaction16(TransactionState state)
+    {
+        return tm.getTransaction();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Transaction getTransaction64(TransactionState state)
+    {
+        return tm.getTransaction();
+    }
+
+    @State(Scope.Thread)
+    public static class TransactionState
+    {
+        Transaction transaction;
+
+        @Setup(Level.Iteration)
+        public void setup(TransactionBench bench) throws Exception
+        {
+            transaction = bench.tm.begin();
+        }
+
+        @TearDown(Level.Iteration)
+        public void teardown() throws Exception
+        {
+            transaction.rollback();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.ops4j.pax.transx.jdbc.stubs;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of the physical connections it has opened, so that tests can
+ * check the size of a pool without going through its management interface.
+ */
+public class CountingDataSource extends StubDataSource
+{
+   private final List<Connection> connections = new CopyOnWriteArrayList<>();
+
+   /** {@inheritDoc} */
+   @Override
+   public Connection getConnection() throws SQLException
+   {
+      Connection connection = super.getConnection();
+      connections.add(connection);
+      return connection;
+   }
+
+   /** Number of connections opened and not closed yet */
+   public int getOpenConnections()
+   {
+      int open = 0;
+      for (Connection connection : connections) {
+         try {
+            if (!connection.isClosed()) {
+               open++;
+            }
+         }
+         catch (SQLException e) {
+            throw new IllegalStateException(e);
+         }
+      }
+      return open;
+   }
+}
@@ -26,6 +26,7 @@ import java.sql.NClob;
 import java.sql.PreparedStatement;
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Savepoint;
@@ -35,6 +36,8 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  *
@@ -44,16 +47,111 @@ public class StubConnection implements Connection
 {
    public static volatile boolean throwRandomExceptions;
 
+   /** Number of calls reading or changing the session state, which are round-trips with most drivers */
+   public static final LongAdder sessionStateCalls = new LongAdder();
+
    private static long foo;
 
+   private final StubDataSource dataSource;
+   private final LongAdder validations = new LongAdder();
+   private final LongAdder preparedStatements = new LongAdder();
+   private final LongAdder queries = new LongAdder();
+   private volatile int validationTimeout = -1;
+   private volatile boolean valid = true;
+   private volatile int networkTimeout;
    private boolean autoCommit;
-   private boolean isClosed;
+   private volatile boolean isClosed;
    private int isolation;
+   private boolean readOnly;
+   private String catalog;
+   private String schema;
 
    static {
       foo = System.currentTimeMillis();
    }
 
+   public StubConnection()
+   {
+      this(null);
+   }
+
+   StubConnection(StubDataSource dataSource)
+   {
+      this.dataSource = dataSource;
+   }
+
+   /** Make the connection look broken to {@link #isValid(int)} */
+   public void setValid(boolean valid)
+   {
+      this.valid = valid;
+   }
+
+   /** Number of calls to {@link #isValid(int)} */
+   public long getValidations()
+   {
+      return validations.sum();
+   }
+
+   /** The timeout given to the last call to {@link #isValid(int)}, -1 if not called */
+   public int getValidationTimeout()
+   {
+      return validationTimeout;
+   }
+
+   /** Number of statements prepared with {@link #prepareStatement(String)} */
+   public long getPreparedStatements()
+   {
+      return preparedStatements.sum();
+   }
+
+   /** Number of queries executed through these prepared statements */
+   public long getQueries()
+   {
+      return queries.sum();
+   }
+
+   void executeQuery() throws SQLException
+   {
+      queries.increment();
+      if (dataSource != null) {
+         dataSource.validating(this);
+      }
+      if (!valid) {
+         throw new SQLException("Connection reset", "08S01");
+      }
+   }
+
+   /** Apply the effect on the session of a statement run on this connection */
+   void execute(String sql)
+   {
+      // the session can be changed by statements as well as through the connection
+      if (sql.startsWith("SET SCHEMA ")) {
+         schema = sql.substring("SET SCHEMA ".length());
+      }
+   }
+
+   /**
+    * Wait for the answer of the database, or until the network timeout expires.
+    */
+   void roundTrip(long millis) throws SQLException
+   {
+      if (millis <= 0) {
+         return;
+      }
+      final int timeout = networkTimeout;
+      try {
+         if (timeout > 0 && timeout < millis) {
+            TimeUnit.MILLISECONDS.sleep(timeout);
+            throw new SQLTimeoutException("Read timed out");
+         }
+         TimeUnit.MILLISECONDS.sleep(millis);
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new SQLException("Interrupted", e);
+      }
+   }
+
    /** {@inheritDoc} */
    public <T> T unwrap(Class<T> iface) throws SQLException
    {
@@ -69,13 +167,14 @@ public class StubConnection implements Connection
    /** {@inheritDoc} */
    public Statement createStatement() throws SQLException
    {
-      return new StubStatement();
+      return new StubStatement(this);
    }
 
    /** {@inheritDoc} */
    public PreparedStatement prepareStatement(String sql) throws SQLException
    {
-      return new StubPreparedStatement();
+      preparedStatements.increment();
+      return new StubPreparedStatement(this);
    }
 
    /** {@inheritDoc} */
@@ -93,12 +192,17 @@ public class StubConnection implements Connection
    /** {@inheritDoc} */
    public void setAutoCommit(boolean autoCommit) throws SQLException
    {
+      sessionStateCalls.increment();
+      if (dataSource != null) {
+         roundTrip(dataSource.getAutoCommitDelay());
+      }
       this.autoCommit = autoCommit;
    }
 
    /** {@inheritDoc} */
    public boolean getAutoCommit() throws SQLException
    {
+      sessionStateCalls.increment();
       return autoCommit;
    }
 
@@ -121,7 +225,7 @@ public class StubConnection implements Connection
    }
 
    /** {@inheritDoc} */
-   public boolean isClosed() throws SQLException
+   public boolean isClosed()
    {
       return isClosed;
    }
@@ -135,34 +239,42 @@ public class StubConnection implements Connection
    /** {@inheritDoc} */
    public void setReadOnly(boolean readOnly) throws SQLException
    {
+      sessionStateCalls.increment();
+      this.readOnly = readOnly;
    }
 
    /** {@inheritDoc} */
    public boolean isReadOnly() throws SQLException
    {
-      return false;
+      sessionStateCalls.increment();
+      return readOnly;
    }
 
    /** {@inheritDoc} */
    public void setCatalog(String catalog) throws SQLException
    {
+      sessionStateCalls.increment();
+      this.catalog = catalog;
    }
 
    /** {@inheritDoc} */
    public String getCatalog() throws SQLException
    {
-      return null;
+      sessionStateCalls.increment();
+      return catalog;
    }
 
    /** {@inheritDoc} */
    public void setTransactionIsolation(int level) throws SQLException
    {
+      sessionStateCalls.increment();
       this.isolation = level;
    }
 
    /** {@inheritDoc} */
    public int getTransactionIsolation() throws SQLException
    {
+      sessionStateCalls.increment();
       return isolation;
    }
 
@@ -307,7 +419,12 @@ public class StubConnection implements Connection
          throw new RuntimeException("isValidThrowsException=true");
       }
 
-      return true;
+      validations.increment();
+      validationTimeout = timeout;
+      if (dataSource != null) {
+         dataSource.validating(this);
+      }
+      return valid;
    }
 
    /** {@inheritDoc} */
@@ -347,28 +464,33 @@ public class StubConnection implements Connection
    /** {@inheritDoc} */
    public void setSchema(String schema) throws SQLException
    {
+      sessionStateCalls.increment();
+      this.schema = schema;
    }
 
    /** {@inheritDoc} */
    public String getSchema() throws SQLException
    {
-      return null;
+      sessionStateCalls.increment();
+      return schema;
    }
 
    /** {@inheritDoc} */
    public void abort(Executor executor) throws SQLException
    {
+      isClosed = true;
    }
 
    /** {@inheritDoc} */
    public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException
    {
+      this.networkTimeout = milliseconds;
    }
 
    /** {@inheritDoc} */
    public int getNetworkTimeout() throws SQLException
    {
-      return 0;
+      return networkTimeout;
    }
 
 }
\ No newline at end of file
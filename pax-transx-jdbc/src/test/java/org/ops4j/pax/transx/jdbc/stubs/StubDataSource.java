@@ -22,7 +22,10 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -32,12 +35,57 @@ import java.util.logging.Logger;
 public class StubDataSource implements DataSource
 {
    private long connectionDelay;
+   private volatile long validationDelay;
+   private volatile long autoCommitDelay;
+   private final List<StubConnection> connections = new CopyOnWriteArrayList<>();
+   private final AtomicInteger validating = new AtomicInteger();
+   private final AtomicInteger maxValidating = new AtomicInteger();
 
    public void setConnectionDelay(long millis)
    {
       this.connectionDelay = millis;
    }
 
+   /** Time taken by {@link Connection#isValid(int)}, as for a round-trip to the database */
+   public void setValidationDelay(long millis)
+   {
+      this.validationDelay = millis;
+   }
+
+   /** Time taken by {@link Connection#setAutoCommit(boolean)}, as for a round-trip to the database */
+   public void setAutoCommitDelay(long millis)
+   {
+      this.autoCommitDelay = millis;
+   }
+
+   long getAutoCommitDelay()
+   {
+      return autoCommitDelay;
+   }
+
+   /** The connections opened so far */
+   public List<StubConnection> getConnections()
+   {
+      return connections;
+   }
+
+   /** The highest number of connections validated at the same time */
+   public int getMaxConcurrentValidations()
+   {
+      return maxValidating.get();
+   }
+
+   void validating(StubConnection connection) throws SQLException
+   {
+      maxValidating.accumulateAndGet(validating.incrementAndGet(), Math::max);
+      try {
+         connection.roundTrip(validationDelay);
+      }
+      finally {
+         validating.decrementAndGet();
+      }
+   }
+
    /** {@inheritDoc} */
    public PrintWriter getLogWriter() throws SQLException
    {
@@ -90,7 +138,9 @@ public class StubDataSource implements DataSource
          }
       }
 
-      return new StubConnection();
+      StubConnection connection = new StubConnection(this);
+      connections.add(connection);
+      return connection;
    }
 
    /** {@inheritDoc} */
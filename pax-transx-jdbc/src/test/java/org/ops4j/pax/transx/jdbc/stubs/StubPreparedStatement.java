@@ -45,6 +45,18 @@ import java.util.Calendar;
  */
 public class StubPreparedStatement extends StubStatement implements PreparedStatement
 {
+    private final StubConnection connection;
+    private int queryTimeout;
+
+    public StubPreparedStatement()
+    {
+        this(null);
+    }
+
+    StubPreparedStatement(StubConnection connection)
+    {
+        this.connection = connection;
+    }
 
     /** {@inheritDoc} */
     public ResultSet executeQuery(String sql) throws SQLException
@@ -88,12 +100,13 @@ public class StubPreparedStatement extends StubStatement implements PreparedStat
     /** {@inheritDoc} */
     public int getQueryTimeout() throws SQLException
     {
-        return 0;
+        return queryTimeout;
     }
 
     /** {@inheritDoc} */
     public void setQueryTimeout(int seconds) throws SQLException
     {
+        this.queryTimeout = seconds;
     }
 
     /** {@inheritDoc} */
@@ -281,6 +294,9 @@ public class StubPreparedStatement extends StubStatement implements PreparedStat
     /** {@inheritDoc} */
     public ResultSet executeQuery() throws SQLException
     {
+        if (connection != null) {
+            connection.executeQuery();
+        }
         return new StubResultSet();
     }
 
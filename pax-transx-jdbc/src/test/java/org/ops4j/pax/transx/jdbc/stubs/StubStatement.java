@@ -31,6 +31,17 @@ public class StubStatement implements Statement
    protected int count;
    private boolean closed;
    private static long executeDelay;
+   private final StubConnection connection;
+
+   public StubStatement()
+   {
+      this(null);
+   }
+
+   StubStatement(StubConnection connection)
+   {
+      this.connection = connection;
+   }
 
    public static void setExecuteDelayMs(final long delay)
    {
@@ -145,6 +156,9 @@ public class StubStatement implements Statement
    /** {@inheritDoc} */
    public boolean execute(String sql) throws SQLException
    {
+      if (connection != null) {
+         connection.execute(sql);
+      }
       return sql.startsWith("I");
    }
 
@@ -17,6 +17,10 @@ package org.ops4j.pax.transx.jms;
 import org.ops4j.pax.transx.connection.ExceptionSorter;
 import org.ops4j.pax.transx.connection.NoExceptionsAreFatalSorter;
 import org.ops4j.pax.transx.connector.ConnectionManagerBuilder;
+import org.ops4j.pax.transx.connector.PoolEngine;
+import org.ops4j.pax.transx.connector.PoolRuntime;
+import org.ops4j.pax.transx.connector.SubjectSource;
+import org.ops4j.pax.transx.connector.metrics.PoolMetricsTrackerFactory;
 import org.ops4j.pax.transx.jms.impl.ManagedConnectionFactoryImpl;
 import org.ops4j.pax.transx.tm.TransactionManager;
 
@@ -40,6 +44,8 @@ public class ManagedConnectionFactoryBuilder {
     private String userName;
     private String password;
     private String clientID;
+    private int validationConcurrency = 1;
+    private long validationBatchTimeout = 10_000L;
     private ManagedConnectionFactory managedConnectionFactory;
 
     private ManagedConnectionFactoryBuilder() {
@@ -86,6 +92,11 @@ public class ManagedConnectionFactoryBuilder {
         return this;
     }
 
+    public ManagedConnectionFactoryBuilder subjectSource(SubjectSource subjectSource) {
+        builder.subjectSource(subjectSource);
+        return this;
+    }
+
     public ManagedConnectionFactoryBuilder minIdle(int minSize) {
         builder.minIdle(minSize);
         return this;
@@ -146,6 +157,137 @@ public class ManagedConnectionFactoryBuilder {
         return this;
     }
 
+    public ManagedConnectionFactoryBuilder poolEngine(PoolEngine.Factory poolEngine) {
+        builder.poolEngine(poolEngine);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder virtualThreads(boolean virtualThreads) {
+        builder.virtualThreads(virtualThreads);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder adaptiveSizing(boolean adaptiveSizing) {
+        builder.adaptiveSizing(adaptiveSizing);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder adaptiveWaitThreshold(long adaptiveWaitThresholdMs) {
+        builder.adaptiveWaitThreshold(adaptiveWaitThresholdMs);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder adaptiveWaitThreshold(long adaptiveWaitThreshold, TimeUnit unit) {
+        builder.adaptiveWaitThreshold(unit.toMillis(adaptiveWaitThreshold));
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder adaptiveWaitingThreshold(int adaptiveWaitingThreshold) {
+        builder.adaptiveWaitingThreshold(adaptiveWaitingThreshold);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder creationRate(int creationRate) {
+        builder.creationRate(creationRate);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder creationBurst(int creationBurst) {
+        builder.creationBurst(creationBurst);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder metricsTrackerFactory(PoolMetricsTrackerFactory metricsTrackerFactory) {
+        builder.metricsTrackerFactory(metricsTrackerFactory);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder registerMBean(boolean registerMBean) {
+        builder.registerMBean(registerMBean);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder leakDetectionThreshold(long leakDetectionThresholdMs) {
+        builder.leakDetectionThreshold(leakDetectionThresholdMs);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder leakDetectionThreshold(long leakDetectionThreshold, TimeUnit unit) {
+        builder.leakDetectionThreshold(unit.toMillis(leakDetectionThreshold));
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder leakDetectionSampleRate(double leakDetectionSampleRate) {
+        builder.leakDetectionSampleRate(leakDetectionSampleRate);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder leakReclaim(boolean leakReclaim) {
+        builder.leakReclaim(leakReclaim);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder keepaliveTime(long keepaliveTimeMs) {
+        builder.keepaliveTime(keepaliveTimeMs);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder keepaliveTime(long keepaliveTime, TimeUnit unit) {
+        builder.keepaliveTime(unit.toMillis(keepaliveTime));
+        return this;
+    }
+
+    /**
+     * Maximum number of connections validated in parallel by the factory.  Defaults to 1.
+     */
+    public ManagedConnectionFactoryBuilder validationConcurrency(int validationConcurrency) {
+        this.validationConcurrency = validationConcurrency;
+        return this;
+    }
+
+    /**
+     * Time allowed to validate a batch of connections in parallel.  Defaults to 10000ms.
+     */
+    public ManagedConnectionFactoryBuilder validationBatchTimeout(long validationBatchTimeoutMs) {
+        this.validationBatchTimeout = validationBatchTimeoutMs;
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder validationBatchTimeout(long validationBatchTimeout, TimeUnit unit) {
+        this.validationBatchTimeout = unit.toMillis(validationBatchTimeout);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder maxTotalConnections(int maxTotalConnections) {
+        builder.maxTotalConnections(maxTotalConnections);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder maxSubPools(int maxSubPools) {
+        builder.maxSubPools(maxSubPools);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder subPoolIdleTimeout(long subPoolIdleTimeoutMs) {
+        builder.subPoolIdleTimeout(subPoolIdleTimeoutMs);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder subPoolIdleTimeout(long subPoolIdleTimeout, TimeUnit unit) {
+        builder.subPoolIdleTimeout(unit.toMillis(subPoolIdleTimeout));
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder poolRuntime(PoolRuntime poolRuntime) {
+        builder.poolRuntime(poolRuntime);
+        return this;
+    }
+
+    public ManagedConnectionFactoryBuilder deferredReset(boolean deferredReset) {
+        builder.deferredReset(deferredReset);
+        return this;
+    }
+
     public ConnectionFactory build() throws Exception {
         if (connectionFactory == null) {
             throw new NullPointerException("dataSource must be set");
@@ -156,6 +298,10 @@ public class ManagedConnectionFactoryBuilder {
             mcf.setUserName(userName);
             mcf.setPassword(password);
             mcf.setClientID(clientID);
+            mcf.setValidationConcurrency(validationConcurrency);
+            mcf.setValidationBatchTimeout(validationBatchTimeout);
+            // the connection manager pools connections for each subject and request info
+            mcf.setCredentialsMatchedByPool(true);
             managedConnectionFactory = mcf;
         }
         builder.managedConnectionFactory(managedConnectionFactory);
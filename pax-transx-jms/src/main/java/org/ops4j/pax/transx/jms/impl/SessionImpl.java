@@ -84,6 +84,12 @@ public class SessionImpl extends AbstractConnectionHandle<ManagedConnectionFacto
     public void cleanup() {
     }
 
+    @Override
+    protected void reopen() {
+        closeables.clear();
+        super.reopen();
+    }
+
     void start() throws JMSException {
         if (mc != null) {
             mc.start();
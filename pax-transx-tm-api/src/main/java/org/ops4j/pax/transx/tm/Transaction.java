@@ -73,4 +73,23 @@ public interface Transaction {
      */
     void synchronization(Runnable pre, Consumer<Status> post);
 
+    /**
+     * Get the object associated with the given key in this transaction,
+     * or null if there is none.
+     * The default implementation does not keep any association.
+     */
+    default Object getResource(Object key) {
+        return null;
+    }
+
+    /**
+     * Associate an object with the given key in this transaction.
+     * The association is dropped when the transaction completes.
+     * A null value removes the association.
+     * The default implementation ignores it, in which case connections
+     * are not shared by the callers within the transaction.
+     */
+    default void putResource(Object key, Object value) {
+    }
+
 }
@@ -24,14 +24,29 @@ import org.ops4j.pax.transx.tm.TransactionManager;
 import javax.transaction.RollbackException;
 import javax.transaction.Synchronization;
 import javax.transaction.SystemException;
+import java.util.Map;
 import java.util.Objects;
-import java.util.WeakHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
 
 public abstract class AbstractTransactionManagerWrapper<TM extends javax.transaction.TransactionManager> implements TransactionManager {
 
     final protected TM tm;
-    final protected WeakHashMap<javax.transaction.Transaction, TransactionWrapper> transactions = new WeakHashMap<>();
+    /**
+     * Wrappers for the transactions currently known to this manager.
+     * Entries are added the first time a transaction is seen and removed when it completes,
+     * so that lookups from concurrent threads are lock-free reads and the map does not grow.
+     */
+    final protected ConcurrentMap<javax.transaction.Transaction, TransactionWrapper> transactions = new ConcurrentHashMap<>();
+    /**
+     * Wrappers which could not register a completion callback, for transactions first seen
+     * once already marked for rollback or completing.  They are removed when found completed
+     * by the next lookup which misses the map, so that the set stays bounded by the number of
+     * such transactions in flight.
+     */
+    final private Set<TransactionWrapper> untracked = ConcurrentHashMap.newKeySet();
 
     public AbstractTransactionManagerWrapper(TM tm) {
         this.tm = tm;
@@ -44,12 +59,51 @@ public abstract class AbstractTransactionManagerWrapper<TM extends javax.transac
             if (jtx == null) {
                 return null;
             }
-            return transactions.computeIfAbsent(jtx, this::doCreateTransactionWrapper);
+            // Fast path: lock-free read, computeIfAbsent always locks the bin
+            TransactionWrapper wrapper = transactions.get(jtx);
+            if (wrapper != null) {
+                return wrapper;
+            }
+            if (!untracked.isEmpty()) {
+                removeCompleted();
+            }
+            if (isCompleted(jtx.getStatus())) {
+                // Nothing would ever remove it from the map, so do not cache it
+                return doCreateTransactionWrapper(jtx);
+            }
+            wrapper = transactions.computeIfAbsent(jtx, this::doCreateTransactionWrapper);
+            if (!wrapper.tracked) {
+                untracked.add(wrapper);
+            }
+            return wrapper;
         } catch (SystemException e) {
             throw new RuntimeException("Unable to get transaction", e);
         }
     }
 
+    /**
+     * Drop the wrappers without completion callback whose transaction has completed.
+     */
+    private void removeCompleted() {
+        for (TransactionWrapper wrapper : untracked) {
+            try {
+                if (isCompleted(wrapper.transaction.getStatus())) {
+                    untracked.remove(wrapper);
+                    transactions.remove(wrapper.transaction, wrapper);
+                    wrapper.resources.clear();
+                }
+            } catch (SystemException e) {
+                // keep it until next time
+            }
+        }
+    }
+
+    private static boolean isCompleted(int status) {
+        return status == javax.transaction.Status.STATUS_COMMITTED
+                || status == javax.transaction.Status.STATUS_ROLLEDBACK
+                || status == javax.transaction.Status.STATUS_NO_TRANSACTION;
+    }
+
     void disassociate() {
     }
 
@@ -70,12 +124,26 @@ public abstract class AbstractTransactionManagerWrapper<TM extends javax.transac
     protected class TransactionWrapper implements Transaction {
 
         final javax.transaction.Transaction transaction;
+        final Map<Object, Object> resources = new ConcurrentHashMap<>(4);
+        final boolean tracked;
         boolean suspended;
 
         public TransactionWrapper(javax.transaction.Transaction transaction) {
             this.transaction = Objects.requireNonNull(transaction, "transaction should not be null");
-            if (isActive()) {
-                synchronization(null, st -> disassociate());
+            this.tracked = isActive() && trackCompletion();
+        }
+
+        private boolean trackCompletion() {
+            try {
+                synchronization(null, st -> {
+                    transactions.remove(transaction, this);
+                    resources.clear();
+                    disassociate();
+                });
+                return true;
+            } catch (IllegalStateException e) {
+                // marked for rollback in the meantime
+                return false;
             }
         }
 
@@ -182,6 +250,20 @@ public abstract class AbstractTransactionManagerWrapper<TM extends javax.transac
             }
         }
 
+        @Override
+        public Object getResource(Object key) {
+            return resources.get(key);
+        }
+
+        @Override
+        public void putResource(Object key, Object value) {
+            if (value != null) {
+                resources.put(key, value);
+            } else {
+                resources.remove(key);
+            }
+        }
+
         private void ensureAssociated() {
             if (suspended) {
                 throw new IllegalStateException("Transaction is suspended");
@@ -26,6 +26,10 @@ import org.ops4j.pax.transx.tm.impl.geronimo.TransactionManagerWrapper;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.Xid;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
@@ -60,7 +64,67 @@ public class GeronimoTest {
         verify(xares1, never()).prepare(any(Xid.class));
     }
 
+    @Test
+    public void testRollbackOnlyTransactionIsCached() throws Exception {
+        GeronimoTransactionManager gtm = new GeronimoTransactionManager();
+        CountingTransactionManagerWrapper tm = new CountingTransactionManagerWrapper(gtm);
+
+        gtm.begin();
+        gtm.setRollbackOnly();
+        Transaction tx = tm.getTransaction();
+        tx.putResource("key", "value");
+        assertSame(tx, tm.getTransaction());
+        assertEquals("value", tm.getTransaction().getResource("key"));
+
+        gtm.rollback();
+        assertNull(tm.getTransaction());
+        assertEquals(1, tm.size());
+
+        // the next miss drops the completed wrapper
+        gtm.begin();
+        tm.getTransaction();
+        assertEquals(1, tm.size());
+        gtm.commit();
+        assertEquals(0, tm.size());
+    }
+
+    @Test
+    public void testWrapperIsNotReusedAcrossTransactions() throws Exception {
+        GeronimoTransactionManager gtm = new GeronimoTransactionManager();
+        TransactionManager tm = new TransactionManagerWrapper(gtm);
+
+        gtm.begin();
+        Transaction tx1 = tm.getTransaction();
+        tx1.putResource("key", "value");
+        javax.transaction.Transaction jtx1 = gtm.suspend();
+        assertNull(tm.getTransaction());
+
+        gtm.begin();
+        Transaction tx2 = tm.getTransaction();
+        assertNotSame(tx1, tx2);
+        assertNull(tx2.getResource("key"));
+        gtm.commit();
+
+        gtm.resume(jtx1);
+        assertSame(tx1, tm.getTransaction());
+        assertEquals("value", tx1.getResource("key"));
+        gtm.commit();
+        assertNull(tm.getTransaction());
+        assertNull(tx1.getResource("key"));
+    }
+
     private TransactionManager createTm() throws XAException {
         return new TransactionManagerWrapper(new GeronimoTransactionManager());
     }
+
+    static class CountingTransactionManagerWrapper extends TransactionManagerWrapper {
+
+        CountingTransactionManagerWrapper(GeronimoTransactionManager tm) {
+            super(tm);
+        }
+
+        int size() {
+            return transactions.size();
+        }
+    }
 }